@@ -1,13 +1,24 @@
 package com.example.demo;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 
+@Timed("forum.controller") // ハンドラーごとの処理時間 (タグ class, method)
 @Controller
 public class AuthController {
 
@@ -15,7 +26,15 @@ public class AuthController {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder; // SecurityConfig で @Bean にしたものが注入される
+    private PasswordEncoder passwordEncoder; // BoundedPasswordEncoder が注入される (混み合っていれば 503)
+
+    // 退会後に一覧のキャッシュ (FeedCache / PostCountCache) を捨てさせる
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 退会したユーザーのログイン中のセッション (SecurityConfig で記録している)
+    @Autowired
+    private SessionRegistry sessionRegistry;
 
     /**
      * ログインフォームを表示
@@ -53,6 +72,46 @@ public class AuthController {
         return "redirect:/login";
     }
 
+    // ▼▼▼ 【退会 (アカウント削除)】 ▼▼▼
+    /**
+     * 退会の確認画面を表示
+     */
+    @GetMapping("/account/delete")
+    public String deleteAccountForm() {
+        return "account_delete"; // account_delete.html を表示
+    }
+
+    /**
+     * 退会処理
+     * 投稿・コメント・いいねが何千件あっても、エンティティは読み込まずに
+     * 「カウンターの調整」と「ユーザーの削除」の2文で済ませる (残りは DB の ON DELETE CASCADE)
+     */
+    @PostMapping("/account/delete")
+    @Transactional
+    @SqlStatementBudget(2)
+    public String deleteAccount(@AuthenticationPrincipal ForumUserDetails currentUser,
+                                HttpServletRequest request, HttpServletResponse response) {
+
+        // 1. このユーザーのいいね・コメントが付いている (他のユーザーの) 投稿のカウンターを減らす
+        userRepository.releaseCountersOf(currentUser.getId());
+
+        // 2. ユーザーを削除 (投稿・コメント・いいねは CASCADE で削除される)
+        userRepository.deleteInBulkById(currentUser.getId());
+
+        // 3. どの投稿が消えたかは追わず、一覧のキャッシュはすべて捨てる (コミット後に実行される)
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+
+        // 4. 他の端末に残っているセッションも無効にする (次のリクエストでログアウトされる。SecurityConfig)
+        for (SessionInformation session : sessionRegistry.getAllSessions(currentUser, false)) {
+            session.expireNow();
+        }
+
+        // 5. ログアウトさせ、このセッションを無効にする
+        new SecurityContextLogoutHandler().logout(request, response, SecurityContextHolder.getContext().getAuthentication());
+        return "redirect:/login?deleted";
+    }
+    // ▲▲▲ 退会ここまで ▲▲▲
+
     // ▼▼▼ 【フッターリンク用メソッドを追加】 ▼▼▼
     /**
      * 利用規約ページを表示
@@ -0,0 +1,226 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * パスワードのハッシュ化 (BCrypt) を、専用の少数のスレッドで行う PasswordEncoder
+ *
+ * BCrypt は1回で数百ミリ秒 CPU を使うので、登録やログイン (総当たり攻撃を含む) が集中すると
+ * リクエスト処理のスレッドが CPU を使い切り、一覧の表示まで遅くなる。
+ * 1. ハッシュ計算は forum.password.hashing.threads 個のスレッドだけで行う (呼び出し元は結果を待つ)
+ * 2. 待ち行列は forum.password.hashing.queue-capacity 件まで。満杯なら待たずに
+ *    PasswordHashingBusyException (503) にする
+ * 3. コスト (strength) は起動時に、1回のハッシュが forum.password.hashing.target-time 程度になるよう計測して決める
+ *    (forum.password.hashing.strength を指定した場合はその値)。保存済みのハッシュのコストが違えば (高くても低くても)、
+ *    ログイン成功時に新しいコストでハッシュし直す (UserDetailsServiceImpl.updatePassword)
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    // BCrypt のコストの範囲 (BCryptPasswordEncoder が受け付ける値)
+    static final int MIN_BCRYPT_STRENGTH = 4;
+    static final int MAX_BCRYPT_STRENGTH = 31;
+
+    // BCrypt のハッシュ ($2a$10$...) の先頭。2桁の数字がコスト
+    private static final Pattern BCRYPT_PREFIX = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // ハッシュ計算に使うスレッド数 (0 なら CPU 数の半分。最低1)
+    @Value("${forum.password.hashing.threads:0}")
+    private int threads;
+
+    // 計算を待てる件数 (これを超えたら 503)
+    @Value("${forum.password.hashing.queue-capacity:32}")
+    private int queueCapacity;
+
+    // コストを固定する場合に指定する (0 なら起動時に計測して決める)
+    @Value("${forum.password.hashing.strength:0}")
+    private int fixedStrength;
+
+    // 1回のハッシュにかける時間の目安
+    @Value("${forum.password.hashing.target-time:250ms}")
+    private Duration targetTime;
+
+    // 計測で決めるコストの下限・上限 (遅いマシンでも下限より弱くはしない)
+    @Value("${forum.password.hashing.min-strength:10}")
+    private int minStrength;
+
+    @Value("${forum.password.hashing.max-strength:14}")
+    private int maxStrength;
+
+    private int strength;
+    private BCryptPasswordEncoder delegate;
+    private ThreadPoolExecutor executor;
+    private Timer encodeTimer;
+    private Timer matchesTimer;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        strength = fixedStrength > 0 ? fixedStrength : calibrate();
+        delegate = new BCryptPasswordEncoder(strength);
+
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        encodeTimer = Timer.builder("forum.password.hashing")
+                .description("パスワードのハッシュ計算にかかった時間 (待ち時間を除く)")
+                .tag("operation", "encode")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        matchesTimer = Timer.builder("forum.password.hashing")
+                .description("パスワードのハッシュ計算にかかった時間 (待ち時間を除く)")
+                .tag("operation", "matches")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("forum.password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("ハッシュ計算を待っている件数")
+                .register(meterRegistry);
+        Gauge.builder("forum.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("ハッシュ計算中の件数")
+                .register(meterRegistry);
+        Gauge.builder("forum.password.hashing.strength", this, e -> e.strength)
+                .description("BCrypt のコスト")
+                .register(meterRegistry);
+        rejected = Counter.builder("forum.password.hashing.rejected")
+                .description("待ち行列が満杯で 503 にした件数")
+                .register(meterRegistry);
+        log.info("パスワードのハッシュ化: BCrypt strength={}, threads={}, queue-capacity={}", strength, poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * 保存済みのハッシュのコストが現在のコストと違えば true (ログイン成功時にハッシュし直させる)
+     * BCryptPasswordEncoder.upgradeEncoding はコストが低い場合しか true にしないが、計測し直してコストが下がった場合も
+     * 古い高いコストのハッシュを残さないよう、高い場合もハッシュし直す
+     * ハッシュし直しも待ち行列を使うので、混んでいるとき (待ち行列が半分を超えて埋まっているとき) は次回のログインに回す
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int storedStrength = strengthOf(encodedPassword);
+        return storedStrength > 0 && storedStrength != strength && executor.getQueue().size() <= queueCapacity / 2;
+    }
+
+    /**
+     * BCrypt のハッシュのコスト (BCrypt のハッシュでなければ -1)
+     */
+    static int strengthOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return -1;
+        }
+        Matcher matcher = BCRYPT_PREFIX.matcher(encodedPassword);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * ハッシュ計算用のスレッドで実行し、結果を待つ
+     * @throws PasswordHashingBusyException 待ち行列が満杯の場合
+     */
+    <T> T execute(Timer timer, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("パスワードのハッシュ計算が中断されました", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 下限のコストで数回ハッシュして時間を計り、目標の時間に最も近いコストを選ぶ
+     * (コストが1上がるごとに計算時間は2倍になる)
+     */
+    private int calibrate() {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+        String sample = "calibration-" + System.nanoTime();
+        // 1回目は JIT が効いていないので捨てる
+        probe.encode(sample);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probe.encode(sample);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        int calibrated = strengthFor(best, minStrength, targetTime.toNanos(), maxStrength);
+        log.info("BCrypt のコストを計測しました: strength {} で {} ms -> strength {} (目標 {} ms)",
+                minStrength, TimeUnit.NANOSECONDS.toMillis(best), calibrated, targetTime.toMillis());
+        return calibrated;
+    }
+
+    /**
+     * コスト baseStrength で1回 baseNanos かかったとき、targetNanos に最も近いコスト (min〜max の範囲)
+     */
+    static int strengthFor(long baseNanos, int baseStrength, long targetNanos, int maxStrength) {
+        double doublings = Math.log((double) targetNanos / Math.max(1, baseNanos)) / Math.log(2);
+        long strength = baseStrength + Math.round(doublings);
+        return (int) Math.max(Math.max(baseStrength, MIN_BCRYPT_STRENGTH),
+                Math.min(strength, Math.min(maxStrength, MAX_BCRYPT_STRENGTH)));
+    }
+}
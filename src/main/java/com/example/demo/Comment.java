@@ -2,15 +2,17 @@ package com.example.demo;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
-import java.time.ZoneId; // JST変換用に保持
-import java.time.format.DateTimeFormatter; // JST変換用に保持
+import java.time.ZoneId;
 
 @Entity
 @Table(name = "comments") // テーブル名を "comments" にします
 public class Comment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // ID はシーケンスから 50 個ずつまとめて確保する (IDENTITY だと INSERT ごとに ID を受け取る必要があり、バッチにできない)
+    // allocationSize は V3__pooled_id_sequences.sql の INCREMENT BY と合わせる
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "comments_id_seq")
+    @SequenceGenerator(name = "comments_id_seq", sequenceName = "comments_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(columnDefinition = "TEXT", nullable = false) // 本文は必須
@@ -19,6 +21,13 @@ public class Comment {
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    // --- 表示用に保存時に作っておく列 (Post.java と同様) ---
+    @Column(name = "content_html", columnDefinition = "TEXT")
+    private String contentHtml;
+
+    @Column(name = "created_at_display", length = 16)
+    private String createdAtDisplay;
+
     // コメント投稿者 (User) への関連付け (多対一)
     @ManyToOne(fetch = FetchType.LAZY) // パフォーマンスのためLAZYフェッチ
     @JoinColumn(name = "user_id", nullable = false) // 投稿者は必須
@@ -77,15 +86,15 @@ public class Comment {
      * @return "yyyy/MM/dd HH:mm" 形式の日本時間の文字列
      */
     public String getFormattedCreatedAt() {
-        if (this.createdAt == null) {
-            return "";
-        }
-        ZoneId utcZone = ZoneId.of("UTC");
-        ZoneId jstZone = ZoneId.of("Asia/Tokyo");
-        LocalDateTime jstDateTime = this.createdAt.atZone(utcZone)
-                .withZoneSameInstant(jstZone)
-                .toLocalDateTime();
-        return jstDateTime.format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"));
+        return createdAtDisplay != null ? createdAtDisplay : JstDateFormat.format(createdAt);
+    }
+
+    public String getContentHtml() {
+        return contentHtml;
+    }
+
+    public String getCreatedAtDisplay() {
+        return createdAtDisplay;
     }
 
     // --- コールバックメソッド ---
@@ -93,5 +102,17 @@ public class Comment {
     protected void onCreate() {
         // コメント日時を（UTCで）自動設定
         this.createdAt = LocalDateTime.now(ZoneId.of("UTC"));
+        render();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        render();
+    }
+
+    // 本文の表示用 HTML と、表示用の日時 (JST) を作る
+    private void render() {
+        this.contentHtml = ContentRenderer.toHtml(content);
+        this.createdAtDisplay = JstDateFormat.format(createdAt);
     }
 }
\ No newline at end of file
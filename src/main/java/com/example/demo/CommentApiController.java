@@ -0,0 +1,85 @@
+package com.example.demo;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * コメントの JSON API
+ * 投稿一覧には新しい数件のコメントだけを表示し、それより古いものは
+ * 「以前のコメントを表示」ボタンからこの API で読み込む
+ */
+@Timed("forum.controller") // ハンドラーごとの処理時間 (タグ class, method)
+@RestController
+@RequestMapping("/api/posts")
+public class CommentApiController {
+
+    // 1回に返すコメントの最大件数
+    private static final int MAX_LIMIT = 50;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    /**
+     * 指定したカーソル (表示中の一番古いコメント) より古いコメントを返す
+     * @param postId 投稿ID
+     * @param before カーソル ("createdAt,id")
+     * @param limit 件数 (最大 50)
+     * @return comments: 古い順のコメント, hasMore: さらに古いコメントがあるか, nextBefore: 次に使うカーソル
+     */
+    @SqlStatementBudget(1)
+    @GetMapping("/{postId}/comments")
+    public ResponseEntity<?> olderComments(@PathVariable Long postId,
+                                           @RequestParam("before") String before,
+                                           @RequestParam(name = "limit", defaultValue = "20") int limit,
+                                           @AuthenticationPrincipal ForumUserDetails currentUser) {
+        FeedCursor cursor = FeedCursor.parse(before);
+        if (cursor == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "before の形式が正しくありません。"));
+        }
+        int size = Math.min(Math.max(limit, 1), MAX_LIMIT);
+
+        // 1件多く取得して「さらに古いコメントがあるか」を判定する
+        List<CommentPreview> comments = new ArrayList<>(commentRepository.findCommentPreviewsBefore(
+                postId, cursor.createdAt(), cursor.id(), PageRequest.of(0, size + 1)));
+        boolean hasMore = comments.size() > size;
+        if (hasMore) {
+            comments = comments.subList(0, size);
+        }
+        // 新しい順で取得しているので、表示用に古い順へ並べ替える
+        Collections.reverse(comments);
+
+        // 未ログインなら null
+        String currentUsername = currentUser != null ? currentUser.getUsername() : null;
+
+        List<Map<String, Object>> body = new ArrayList<>();
+        for (CommentPreview comment : comments) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", comment.id());
+            item.put("username", comment.authorName());
+            item.put("contentHtml", comment.contentHtml()); // 保存時にエスケープ済みの HTML
+            item.put("createdAt", comment.createdAtDisplay());
+            item.put("editable", comment.authorName() != null && comment.authorName().equals(currentUsername));
+            body.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("comments", body);
+        response.put("hasMore", hasMore);
+        response.put("nextBefore", comments.isEmpty() ? null : comments.get(0).cursor());
+        return ResponseEntity.ok(response);
+    }
+}
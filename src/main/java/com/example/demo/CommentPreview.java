@@ -0,0 +1,35 @@
+package com.example.demo;
+
+import java.time.LocalDateTime;
+
+/**
+ * 投稿一覧に表示するコメント (読み取り専用の DTO)
+ * JPQL のコンストラクタ式で直接作るので、Comment / User エンティティは読み込まない
+ * 本文と日時は保存時に作った表示用の値 (contentHtml / createdAtDisplay) を持つ
+ */
+public record CommentPreview(Long id,
+                             Long postId,
+                             String contentHtml,
+                             String authorName,
+                             LocalDateTime createdAt,
+                             String createdAtDisplay) {
+
+    /**
+     * JPQL のコンストラクタ式用
+     * @param rawContent content_html がまだ作られていない行 (バックフィル前) のときだけ本文が渡される
+     */
+    public CommentPreview(Long id, Long postId, String rawContent, String contentHtml, String authorName,
+                          LocalDateTime createdAt, String createdAtDisplay) {
+        this(id, postId,
+                contentHtml != null ? contentHtml : ContentRenderer.toHtml(rawContent),
+                authorName, createdAt,
+                createdAtDisplay != null ? createdAtDisplay : JstDateFormat.format(createdAt));
+    }
+
+    /**
+     * このコメントより古いコメントを読み込むためのカーソル
+     */
+    public String cursor() {
+        return new FeedCursor(createdAt, id).toString();
+    }
+}
@@ -1,9 +1,16 @@
 package com.example.demo;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
@@ -15,5 +22,54 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
      */
     List<Comment> findByPostIdOrderByCreatedAtAsc(Long postId);
 
+    /**
+     * 投稿一覧用: 複数の投稿について、それぞれ「新しい順に limit 件」までのコメントを
+     * 投稿者名と一緒に1回で取得する (投稿ごとの ROW_NUMBER で絞り込む)
+     * 読み取り専用の CommentPreview (DTO) を返すので、エンティティは読み込まない
+     * 結果は投稿ID、作成日時の昇順 (古い順) に並ぶ
+     */
+    @Query("SELECT new com.example.demo.CommentPreview(c.id, c.post.id, " +
+            "CASE WHEN c.contentHtml IS NULL THEN c.content END, c.contentHtml, " +
+            "u.username, c.createdAt, c.createdAtDisplay) " +
+            "FROM Comment c JOIN c.user u " +
+            "WHERE c.id IN (" +
+            "    SELECT r.id FROM (" +
+            "        SELECT c2.id AS id, ROW_NUMBER() OVER (PARTITION BY c2.post.id ORDER BY c2.createdAt DESC, c2.id DESC) AS rn " +
+            "        FROM Comment c2 WHERE c2.post.id IN :postIds" +
+            "    ) r WHERE r.rn <= :limit" +
+            ") " +
+            "ORDER BY c.post.id, c.createdAt ASC, c.id ASC")
+    List<CommentPreview> findRecentCommentPreviews(@Param("postIds") List<Long> postIds, @Param("limit") int limit);
+
+    /**
+     * 「以前のコメントを表示」用: 指定した (createdAt, id) より古いコメントを新しい順に取得する
+     */
+    @Query("SELECT new com.example.demo.CommentPreview(c.id, c.post.id, " +
+            "CASE WHEN c.contentHtml IS NULL THEN c.content END, c.contentHtml, " +
+            "u.username, c.createdAt, c.createdAtDisplay) " +
+            "FROM Comment c JOIN c.user u " +
+            "WHERE c.post.id = :postId " +
+            "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CommentPreview> findCommentPreviewsBefore(@Param("postId") Long postId,
+                                                   @Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+
+    /**
+     * コメント削除用: 投稿者本人のコメントなら、その投稿IDを返す (コメントのエンティティは読み込まない)
+     */
+    @Query("SELECT c.post.id FROM Comment c WHERE c.id = :id AND c.user.id = :userId")
+    Optional<Long> findPostIdByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * コメントを1文で削除する (投稿者本人の場合だけ)
+     * @return 削除した件数
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.id = :id AND c.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
     // 必要に応じて、他の検索メソッド（例：特定のユーザーによるコメント検索）を追加できます。
 }
\ No newline at end of file
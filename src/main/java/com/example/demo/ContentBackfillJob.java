@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * posts / comments の content_html・created_at_display のバックフィル
+ *
+ * 表示用の列は保存時 (@PrePersist / @PreUpdate) に作られるが、列を追加する前からある行や
+ * SQL で直接入れた行は NULL のままなので、起動時にまとめて埋める。
+ * (埋まるまでの間も、一覧は PostCard / CommentPreview 側で本文から変換して表示する)
+ */
+@Component
+public class ContentBackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentBackfillJob.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 起動時にバックフィルを実行するか
+    @Value("${forum.content.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    // 1回の UPDATE バッチで処理する行数
+    @Value("${forum.content.backfill-batch-size:500}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            backfill();
+        }
+    }
+
+    /**
+     * 表示用の列が NULL の行をすべて埋める
+     * @return 更新した行数 (posts + comments)
+     */
+    public int backfill() {
+        int updated = backfill("posts") + backfill("comments");
+        if (updated > 0) {
+            log.info("表示用の本文 HTML・日時を作成しました: {} 件", updated);
+            // 一覧のキャッシュに変換前の内容が残らないようにする
+            eventPublisher.publishEvent(FeedChangeEvent.all());
+        }
+        return updated;
+    }
+
+    private int backfill(String table) {
+        int total = 0;
+        while (true) {
+            // 更新した行は条件に当てはまらなくなるので、毎回先頭から batchSize 件を取得すればよい
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, content, created_at FROM " + table +
+                    " WHERE content_html IS NULL OR created_at_display IS NULL ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> {
+                        Timestamp createdAt = rs.getTimestamp("created_at");
+                        return new Object[] {
+                                ContentRenderer.toHtml(rs.getString("content")),
+                                JstDateFormat.format(createdAt != null ? createdAt.toLocalDateTime() : null),
+                                rs.getLong("id")
+                        };
+                    },
+                    batchSize);
+            if (rows.isEmpty()) {
+                return total;
+            }
+            jdbcTemplate.batchUpdate(
+                    "UPDATE " + table + " SET content_html = ?, created_at_display = ? WHERE id = ?",
+                    rows);
+            total += rows.size();
+        }
+    }
+}
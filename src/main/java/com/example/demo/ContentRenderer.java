@@ -0,0 +1,29 @@
+package com.example.demo;
+
+import org.springframework.web.util.HtmlUtils;
+
+/**
+ * 投稿・コメント本文の表示用 HTML を作る
+ *
+ * 以前は一覧を表示するたびに list.html で #strings.replace(content, '\n', '<br />') を
+ * th:utext で出力していた (本文の HTML がエスケープされない XSS でもあった)。
+ * 今は保存時 (Post / Comment の @PrePersist / @PreUpdate) に1回だけ変換して
+ * content_html 列に保存し、一覧ではそれをそのまま出力する。
+ */
+public final class ContentRenderer {
+
+    private ContentRenderer() {
+    }
+
+    /**
+     * HTML をエスケープし、改行を &lt;br /&gt; に変換する
+     * @param content 本文 (改行は \n に正規化済み)
+     * @return そのまま th:utext で出力できる安全な HTML (null の場合は空文字)
+     */
+    public static String toHtml(String content) {
+        if (content == null) {
+            return "";
+        }
+        return HtmlUtils.htmlEscape(content).replace("\n", "<br />");
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.demo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 負荷試験・大規模データ検証用の合成データ生成 (generate-data プロファイルのときだけ有効)
+ *
+ * Flyway で作成したテーブル (users / posts / comments / likes) に、シードから毎回同じデータを入れる。
+ * (日時も実行した時刻ではなく forum.generator.end を基準にするので、いつ実行しても同じになる)
+ * - いいね・コメントは、投稿ごと・ユーザーごとに Zipf 分布で偏らせる (一部の人気投稿・ヘビーユーザーに集中する)
+ * - JDBC バッチ (batch-size 件ごとにコミット) で書き込む。PostgreSQL では
+ *   接続URLに reWriteBatchedInserts=true を付けると複数行の INSERT にまとめられてさらに速くなる
+ * - 最後に PostCounterRepairJob と同じ方法で like_count / comment_count を数え直す
+ *
+ * 実行方法 (どちらも既存のデータは消さずに追加する):
+ * - Spring プロファイル: --spring.profiles.active=generate-data (起動時に生成してそのまま起動を続ける)
+ * - main クラス: DatasetGenerator.main (Web サーバーを起動せず、生成したら終了する)
+ * 件数などは forum.generator.* で指定する (application-generate-data.properties を参照)
+ */
+@Component
+@Profile("generate-data")
+public class DatasetGenerator implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Value("${forum.generator.seed:42}")
+    private long seed;
+
+    // ユーザー名は prefix + 連番 (同じDBに2回目を入れるときは prefix を変える)
+    @Value("${forum.generator.username-prefix:gen-}")
+    private String usernamePrefix;
+
+    @Value("${forum.generator.password:password}")
+    private String password;
+
+    @Value("${forum.generator.users:10000}")
+    private int users;
+
+    @Value("${forum.generator.posts:100000}")
+    private int posts;
+
+    @Value("${forum.generator.comments:300000}")
+    private long comments;
+
+    // いいねの試行回数 (同じユーザー・投稿の組み合わせは1件にまとめられるので、実際の件数は少し減る)
+    @Value("${forum.generator.likes:1000000}")
+    private long likes;
+
+    // Zipf 分布の指数 (大きいほど一部の投稿・ユーザーに集中する。1.0 前後が一般的)
+    @Value("${forum.generator.zipf-exponent:1.0}")
+    private double zipfExponent;
+
+    // 投稿の作成日時をさかのぼる期間
+    @Value("${forum.generator.span:365d}")
+    private Duration span;
+
+    // 生成する日時の基準 (最後の日時。UTC の ISO 形式)
+    @Value("${forum.generator.end:2025-01-01T00:00:00}")
+    private String endAt;
+
+    @Value("${forum.generator.batch-size:5000}")
+    private int batchSize;
+
+    /**
+     * Web サーバーを起動せずに生成だけ行う
+     * (例: java -cp app.jar -Dloader.main=com.example.demo.DatasetGenerator org.springframework.boot.loader.launch.PropertiesLauncher
+     *      --spring.datasource.url=... --forum.generator.posts=1000000)
+     */
+    public static void main(String[] args) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("generate-data")
+                .run(args)) {
+            log.info("データ生成が完了しました");
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        generate();
+    }
+
+    public void generate() {
+        long started = System.nanoTime();
+        Random random = new Random(seed);
+        LocalDateTime end = LocalDateTime.parse(endAt);
+        LocalDateTime start = end.minus(span);
+        // 全ユーザー共通のパスワード (負荷試験ツールからログインできるよう、BCrypt でハッシュ化しておく)
+        String passwordHash = passwordEncoder.encode(password);
+        log.info("データ生成を開始します: seed={}, users={}, posts={}, comments={}, likes={}, end={}",
+                seed, users, posts, comments, likes, end);
+
+        // 1. ユーザー
+        long userIdBefore = maxId("users");
+        insertInBatches("INSERT INTO users (username, password, role) VALUES (?, ?, 'USER')", users, (ps, i) -> {
+            ps.setString(1, usernamePrefix + i);
+            ps.setString(2, passwordHash);
+        });
+        long[] userIds = idsAfter("users", userIdBefore);
+
+        // 2. 投稿 (作成日時は start 〜 end に等間隔で、投稿者は Zipf 分布)
+        ZipfSampler postAuthors = new ZipfSampler(userIds.length, zipfExponent, random);
+        long postIdBefore = maxId("posts");
+        insertInBatches("INSERT INTO posts (title, content, content_html, created_at, created_at_display, user_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", posts, (ps, i) -> {
+            String content = "生成された投稿 #" + i + "\n" + "本文の行です。".repeat(1 + i % 4);
+            LocalDateTime createdAt = postCreatedAt(start, end, i);
+            ps.setString(1, "投稿 #" + i);
+            ps.setString(2, content);
+            ps.setString(3, ContentRenderer.toHtml(content));
+            ps.setTimestamp(4, Timestamp.valueOf(createdAt));
+            ps.setString(5, JstDateFormat.format(createdAt));
+            ps.setLong(6, userIds[postAuthors.sample(random)]);
+        });
+        long[] postIds = idsAfter("posts", postIdBefore);
+
+        // 3. コメント (対象の投稿・投稿者とも Zipf 分布。日時は投稿より後)
+        ZipfSampler commentedPosts = new ZipfSampler(postIds.length, zipfExponent, random);
+        ZipfSampler commenters = new ZipfSampler(userIds.length, zipfExponent, random);
+        insertInBatches("INSERT INTO comments (content, content_html, created_at, created_at_display, user_id, post_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", comments, (ps, i) -> {
+            int post = commentedPosts.sample(random);
+            LocalDateTime postedAt = postCreatedAt(start, end, post);
+            long maxDelaySeconds = Math.max(1, Duration.between(postedAt, end).getSeconds());
+            LocalDateTime createdAt = postedAt.plusSeconds(1 + (long) (random.nextDouble() * maxDelaySeconds));
+            String content = "生成されたコメント #" + i;
+            ps.setString(1, content);
+            ps.setString(2, ContentRenderer.toHtml(content));
+            ps.setTimestamp(3, Timestamp.valueOf(createdAt));
+            ps.setString(4, JstDateFormat.format(createdAt));
+            ps.setLong(5, userIds[commenters.sample(random)]);
+            ps.setLong(6, postIds[post]);
+        });
+
+        // 4. いいね (対象の投稿・ユーザーとも Zipf 分布。重複した組み合わせは無視する)
+        ZipfSampler likedPosts = new ZipfSampler(postIds.length, zipfExponent, random);
+        ZipfSampler likers = new ZipfSampler(userIds.length, zipfExponent, random);
+        insertInBatches("INSERT INTO likes (user_id, post_id, created_at) VALUES (?, ?, ?) ON CONFLICT DO NOTHING",
+                likes, (ps, i) -> {
+            ps.setLong(1, userIds[likers.sample(random)]);
+            ps.setLong(2, postIds[likedPosts.sample(random)]);
+            ps.setTimestamp(3, Timestamp.valueOf(end));
+        });
+
+        // 5. いいね数・コメント数のカウンターを数え直し、一覧のキャッシュを捨てる
+        int repaired = postRepository.repairCounters();
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+
+        log.info("データ生成が完了しました: {} 秒 (カウンターを更新した投稿: {} 件)",
+                Duration.ofNanos(System.nanoTime() - started).toSeconds(), repaired);
+    }
+
+    private interface RowWriter {
+        void write(PreparedStatement ps, int index) throws SQLException;
+    }
+
+    // count 件を batchSize 件ずつ、それぞれ1つのトランザクションで書き込む
+    private void insertInBatches(String sql, long count, RowWriter writer) {
+        String table = sql.substring("INSERT INTO ".length(), sql.indexOf(' ', "INSERT INTO ".length()));
+        long written = 0;
+        long nextLog = count / 10;
+        while (written < count) {
+            long offset = written;
+            int size = (int) Math.min(batchSize, count - written);
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    writer.write(ps, (int) (offset + i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            }));
+            written += size;
+            if (written >= nextLog || written == count) {
+                log.info("{}: {} / {} 件", table, written, count);
+                nextLog = written + count / 10;
+            }
+        }
+    }
+
+    // index 番目の投稿の作成日時 (start 〜 end に等間隔。IDの順と日時の順が一致する)
+    private LocalDateTime postCreatedAt(LocalDateTime start, LocalDateTime end, int index) {
+        long spanSeconds = Duration.between(start, end).getSeconds();
+        return start.plusSeconds(spanSeconds * index / Math.max(1, posts));
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max != null ? max : 0;
+    }
+
+    // このスクリプトで追加した行のID (他に書き込む人がいない前提で、追加前の最大IDより大きいもの)
+    private long[] idsAfter(String table, long idBefore) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE id > ? ORDER BY id", Long.class, idBefore);
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * JdbcTemplate など Hibernate を通さない書き込みの後に、二次キャッシュ (SecondLevelCacheConfig) の Post を消す
+ *
+ * 投稿に関わる書き込みは FeedChangeEvent を出すことになっている (FeedCache と同じ。LikeWriteBehindBuffer の書き込みも
+ * LIKES_WRITTEN を出す) ので、コミット後にそれを受けて消す。
+ */
+@Component
+public class EntityCacheEvictor {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeedChange(FeedChangeEvent event) {
+        Cache cache = entityManagerFactory.getCache();
+        switch (event.type()) {
+            // 新しい投稿はまだキャッシュにない
+            case POST_CREATED -> {
+            }
+            case ALL -> cache.evict(Post.class);
+            default -> cache.evict(Post.class, event.postId());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.demo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 投稿一覧 (ユーザーに依存しない部分) のキャッシュ
+ *
+ * トップページの最初の数ページにアクセスが集中するため、PostFeedLoader.loadPage の結果 (FeedPage) を
+ * 件数上限つきでメモリに保持する。キャッシュに当たれば SQL は1本も発行しない。
+ * ログイン中のユーザーごとの情報 (いいね済みか、編集ボタンを出すか) はキャッシュせず、毎回コントローラーで付け加える。
+ *
+ * 書き込み時は FeedChangeEvent (コミット後に届く) を受けて、影響するエントリだけを捨てる。
+ * - 投稿の作成: ページ番号のページはすべてずれるので捨てる (カーソル指定のページは影響なし)
+ * - 投稿の削除: すべて捨てる (削除はまれなので単純にする)
+ * - 投稿の更新・コメントの変更・いいね数の変更: その投稿を含むページだけ捨てる
+ *   (いいね数のイベントは切り替えのコミット順に届くとは限らないので、イベントの値では書き換えず読み直させる)
+ * - write-behind バッファの書き込み (LIKES_WRITTEN): その投稿を含むページだけ捨てる
+ * JdbcTemplate や SQL で直接書き換えた場合は ALL を送るか、TTL で期限切れになるのを待つ。
+ */
+@Component
+public class FeedCache {
+
+    // キャッシュのキー (cursor が null ならページ番号のページ)
+    private record Key(FeedCursor cursor, int page, int size) {
+    }
+
+    @Autowired
+    private PostFeedLoader postFeedLoader;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // いいね！の write-behind モードのときだけ存在する (未書き込みのいいね数を足すため)
+    @Autowired(required = false)
+    private LikeWriteBehindBuffer likeWriteBehindBuffer;
+
+    // false にするとキャッシュせず、毎回 DB から読み込む
+    @Value("${forum.feed.cache.enabled:true}")
+    private boolean enabled;
+
+    // 保持するページ数の上限 (超えると使われていないものから捨てる)
+    @Value("${forum.feed.cache.max-pages:500}")
+    private long maxPages;
+
+    // 書き込みイベントを取りこぼした場合の保険として、この時間が経ったら読み直す
+    @Value("${forum.feed.cache.ttl:10m}")
+    private Duration ttl;
+
+    private Cache<Key, FeedPage> cache;
+
+    // 投稿ID -> その投稿を含むキャッシュのキー (更新時に影響するページだけ捨てるため)
+    private final Map<Long, Set<Key>> keysByPostId = new ConcurrentHashMap<>();
+
+    // キャッシュへの追加と無効化を直列にするロック (読み取り (ヒット) はロックしない)
+    private final Object writeLock = new Object();
+    // 無効化のたびに増える。読み込み中に無効化があったら、その結果はキャッシュしない
+    private long version;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxPages)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .removalListener((Key key, FeedPage page, RemovalCause cause) -> {
+                    if (key != null && page != null && cause != RemovalCause.REPLACED) {
+                        unindex(key, page);
+                    }
+                })
+                .build();
+        // cache.gets (hit/miss)・cache.evictions・cache.size などを "forum.feed" の名前で公開する
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "forum.feed");
+    }
+
+    /**
+     * 投稿一覧の1ページを返す (キャッシュになければ PostFeedLoader で読み込む)
+     */
+    public FeedPage getPage(FeedCursor cursor, int page, int size) {
+        if (!enabled) {
+            return load(cursor, page, size);
+        }
+        Key key = new Key(cursor, cursor != null ? 0 : page, size);
+        FeedPage cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadVersion;
+        synchronized (writeLock) {
+            loadVersion = version;
+        }
+        FeedPage loaded = load(cursor, page, size);
+        synchronized (writeLock) {
+            // 読み込み中に書き込みがあった場合は、古い内容かもしれないのでキャッシュしない
+            if (loadVersion == version) {
+                for (PostCard post : loaded.posts()) {
+                    keysByPostId.computeIfAbsent(post.id(), id -> ConcurrentHashMap.newKeySet()).add(key);
+                }
+                cache.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeedChange(FeedChangeEvent event) {
+        synchronized (writeLock) {
+            version++;
+            switch (event.type()) {
+                case POST_CREATED -> cache.invalidateAll(
+                        cache.asMap().keySet().stream().filter(key -> key.cursor() == null).toList());
+                case POST_UPDATED, COMMENTS_CHANGED, LIKE_COUNT_CHANGED, LIKES_WRITTEN -> cache.invalidateAll(keysOf(event.postId()));
+                case POST_DELETED, ALL -> cache.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * DB から読み込み、write-behind モードなら未書き込みのいいね数を足す (PostStatsCache と同じ)
+     * 2つの読み取りの間にバッファの書き込みがコミットされると、書き込み前の DB の値に
+     * 書き込み後の (書き込んだ分が消えた) 未書き込み分を足すことになり、少なく数える。
+     * その書き込みは投稿ごとに LIKES_WRITTEN を送るので、この結果はキャッシュされない (または捨てられる)
+     */
+    private FeedPage load(FeedCursor cursor, int page, int size) {
+        FeedPage loaded = postFeedLoader.loadPage(cursor, page, size);
+        if (likeWriteBehindBuffer == null) {
+            return loaded;
+        }
+        for (PostCard post : loaded.posts()) {
+            int pendingDelta = likeWriteBehindBuffer.pendingLikeDelta(post.id());
+            if (pendingDelta != 0) {
+                loaded = loaded.withLikeCount(post.id(), Math.max(post.likeCount() + pendingDelta, 0));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * ヒット率などの統計 (hitCount / missCount / evictionCount ...)
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private List<Key> keysOf(Long postId) {
+        Set<Key> keys = keysByPostId.get(postId);
+        return keys != null ? new ArrayList<>(keys) : List.of();
+    }
+
+    // 削除通知は別スレッドで届く。その間に同じキーで再びキャッシュされていたら索引は残す
+    // (不要な索引が残っても、余分に無効化するだけで害はない)
+    private void unindex(Key key, FeedPage page) {
+        synchronized (writeLock) {
+            if (cache.asMap().containsKey(key)) {
+                return;
+            }
+            for (PostCard post : page.posts()) {
+                keysByPostId.computeIfPresent(post.id(), (id, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+}
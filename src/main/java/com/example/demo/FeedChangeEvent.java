@@ -0,0 +1,40 @@
+package com.example.demo;
+
+/**
+ * 投稿一覧の内容が変わったことを知らせるイベント
+ * FeedCache (一覧のキャッシュ) と PostCountCache (投稿総数) が受け取り、影響するエントリだけを更新する
+ *
+ * @param type 変更の種類
+ * @param postId 変更された投稿のID
+ * @param likeCount LIKE_COUNT_CHANGED のときの新しいいいね数 (それ以外は 0)。
+ *                  同時の切り替えではコミット順に届くとは限らないので、キャッシュはこの値を使わずに読み直す
+ */
+public record FeedChangeEvent(Type type, Long postId, int likeCount) {
+
+    public enum Type {
+        POST_CREATED,
+        POST_UPDATED,
+        POST_DELETED,
+        // コメントの作成・更新・削除 (コメント数と一覧に表示するコメントが変わる)
+        COMMENTS_CHANGED,
+        LIKE_COUNT_CHANGED,
+        // write-behind バッファ (LikeWriteBehindBuffer) のいいね！が DB に書き込まれた。
+        // 表示するいいね数は変わらない (切り替えのときに LIKE_COUNT_CHANGED を送っている) が、
+        // 書き込みと重なった読み込みは DB と未書き込み分を食い違って数えることがあるので、キャッシュは読み直す
+        LIKES_WRITTEN,
+        // 一括でのデータ修正など、どの投稿が変わったか分からない場合
+        ALL
+    }
+
+    public static FeedChangeEvent of(Type type, Long postId) {
+        return new FeedChangeEvent(type, postId, 0);
+    }
+
+    public static FeedChangeEvent likeCountChanged(Long postId, int likeCount) {
+        return new FeedChangeEvent(Type.LIKE_COUNT_CHANGED, postId, likeCount);
+    }
+
+    public static FeedChangeEvent all() {
+        return new FeedChangeEvent(Type.ALL, null, 0);
+    }
+}
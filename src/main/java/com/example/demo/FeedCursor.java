@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * 投稿一覧のキーセット (カーソル) ページネーション用カーソル
+ * URL上では "createdAt,id" 形式 (例: /?before=2025-01-01T12:34:56.789,42) で表す
+ *
+ * OFFSET ではなく「この投稿より古いもの」を (created_at DESC, id DESC) のインデックスで
+ * 直接たどるため、何ページ目であっても先頭ページと同じコストで取得できる。
+ */
+public record FeedCursor(LocalDateTime createdAt, Long id) {
+
+    /**
+     * URLパラメータ ("createdAt,id") を解析する
+     * @return 不正な形式の場合は null (呼び出し側で先頭ページとして扱う)
+     */
+    public static FeedCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        int comma = value.lastIndexOf(',');
+        if (comma <= 0 || comma == value.length() - 1) {
+            return null;
+        }
+        try {
+            LocalDateTime createdAt = LocalDateTime.parse(value.substring(0, comma).trim());
+            Long id = Long.valueOf(value.substring(comma + 1).trim());
+            return new FeedCursor(createdAt, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * URLパラメータ用の文字列表現
+     */
+    @Override
+    public String toString() {
+        return createdAt + "," + id;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo;
+
+import java.util.List;
+
+/**
+ * 投稿一覧の1ページ分 (読み取り専用)
+ * @param posts 表示順 (createdAt の降順) の投稿
+ * @param hasNext さらに古い投稿があるか
+ */
+public record FeedPage(List<PostCard> posts, boolean hasNext) {
+
+    /**
+     * 「次へ」のカーソル (最後に表示した投稿)。次のページがなければ null
+     */
+    public String nextCursor() {
+        return hasNext && !posts.isEmpty() ? posts.get(posts.size() - 1).cursor() : null;
+    }
+
+    /**
+     * いいね数だけを書き換えたコピーを返す (FeedCache 用)
+     */
+    public FeedPage withLikeCount(Long postId, int likeCount) {
+        List<PostCard> updated = posts.stream()
+                .map(post -> post.id().equals(postId) ? post.withLikeCount(likeCount) : post)
+                .toList();
+        return new FeedPage(updated, hasNext);
+    }
+}
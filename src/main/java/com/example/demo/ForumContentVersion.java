@@ -0,0 +1,34 @@
+package com.example.demo;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * フォーラム全体の内容のバージョン (投稿・コメント・いいね！の書き込みのたびに進む)
+ * 未ログインの一覧 (GET /) の ETag に使い、前回から何も書き込まれていなければ 304 を返す
+ *
+ * 書き込みは FeedChangeEvent で知らせることになっている (FeedCache と同じ) ので、コミット後にそれを受けて進める
+ * (コミット前に進めると、古い内容が新しいバージョンの ETag でブラウザに残ることがある)
+ */
+@Component
+public class ForumContentVersion {
+
+    // 起動ごとに変える (再起動の間にデータやテンプレートが変わっていても、前の ETag と一致しないように)
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong version = new AtomicLong();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeedChange(FeedChangeEvent event) {
+        version.incrementAndGet();
+    }
+
+    /**
+     * 弱い ETag (W/"...")。同じ内容をバイト単位で同じに描画することまでは保証しないため
+     */
+    public String etag() {
+        return "W/\"feed-" + epoch + "-" + version.get() + "\"";
+    }
+}
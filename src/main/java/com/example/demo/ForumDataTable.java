@@ -0,0 +1,225 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * エクスポート/インポート (ForumExporter / ForumImporter) の対象テーブル
+ * 外部キーの順 (users → posts → comments → likes) に並べてあり、この順に書き出し・読み込みする
+ * JSON Lines の1行は {"table": "posts", "id": 1, "title": "...", ...} (値は列名そのまま、日時は ISO 形式)
+ */
+enum ForumDataTable {
+
+    USERS("users", List.of(
+            new Column("id", Kind.LONG), new Column("username", Kind.STRING),
+            new Column("password", Kind.STRING), new Column("role", Kind.STRING)),
+            "id"),
+    POSTS("posts", List.of(
+            new Column("id", Kind.LONG), new Column("title", Kind.STRING), new Column("content", Kind.STRING),
+            new Column("content_html", Kind.STRING), new Column("created_at", Kind.TIMESTAMP),
+            new Column("created_at_display", Kind.STRING), new Column("like_count", Kind.INT),
+            new Column("comment_count", Kind.INT), new Column("user_id", Kind.LONG)),
+            "id"),
+    COMMENTS("comments", List.of(
+            new Column("id", Kind.LONG), new Column("content", Kind.STRING), new Column("content_html", Kind.STRING),
+            new Column("created_at", Kind.TIMESTAMP), new Column("created_at_display", Kind.STRING),
+            new Column("user_id", Kind.LONG), new Column("post_id", Kind.LONG)),
+            "id"),
+    LIKES("likes", List.of(
+            new Column("user_id", Kind.LONG), new Column("post_id", Kind.LONG), new Column("created_at", Kind.TIMESTAMP)),
+            "user_id", "post_id");
+
+    enum Kind { LONG, INT, STRING, TIMESTAMP }
+
+    record Column(String name, Kind kind) {
+    }
+
+    private final String tableName;
+    private final List<Column> columns;
+    // キーセットで読み進めるためのキー (主キー。1列か2列)
+    private final String[] keyColumns;
+
+    ForumDataTable(String tableName, List<Column> columns, String... keyColumns) {
+        this.tableName = tableName;
+        this.columns = columns;
+        this.keyColumns = keyColumns;
+    }
+
+    String tableName() {
+        return tableName;
+    }
+
+    /**
+     * id 列が自動採番 (BIGSERIAL) か (インポート後にシーケンスを進める必要があるか)
+     */
+    boolean hasSequence() {
+        return keyColumns.length == 1;
+    }
+
+    static ForumDataTable fromTableName(String tableName) {
+        for (ForumDataTable table : values()) {
+            if (table.tableName.equals(tableName)) {
+                return table;
+            }
+        }
+        throw new IllegalArgumentException("不明なテーブルです: " + tableName);
+    }
+
+    // --- エクスポート ---
+
+    /**
+     * キー順に、指定したキーより後ろの行を読む SQL
+     * (1列: id > ?、2列: user_id > ? OR (user_id = ? AND post_id > ?))
+     */
+    String selectAfterSql() {
+        String select = "SELECT " + columns.stream().map(Column::name).collect(Collectors.joining(", ")) + " FROM " + tableName;
+        String orderBy = " ORDER BY " + String.join(", ", keyColumns);
+        if (keyColumns.length == 1) {
+            return select + " WHERE " + keyColumns[0] + " > ?" + orderBy;
+        }
+        return select + " WHERE " + keyColumns[0] + " > ? OR (" + keyColumns[0] + " = ? AND " + keyColumns[1] + " > ?)" + orderBy;
+    }
+
+    void bindAfter(PreparedStatement ps, long[] key) throws SQLException {
+        ps.setLong(1, key[0]);
+        if (keyColumns.length == 2) {
+            ps.setLong(2, key[0]);
+            ps.setLong(3, key[1]);
+        }
+    }
+
+    /**
+     * 先頭から読むときのキー (ID は 1 から始まる)
+     */
+    long[] firstKey() {
+        return new long[keyColumns.length];
+    }
+
+    String keyOf(ResultSet rs) throws SQLException {
+        return Arrays.stream(keyColumns).map(column -> {
+            try {
+                return String.valueOf(rs.getLong(column));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.joining(","));
+    }
+
+    long[] parseKey(String key) {
+        return Arrays.stream(key.split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    void writeRow(ResultSet rs, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStartObject();
+        generator.writeStringField("table", tableName);
+        for (Column column : columns) {
+            generator.writeFieldName(column.name());
+            switch (column.kind()) {
+                case LONG -> {
+                    long value = rs.getLong(column.name());
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case INT -> {
+                    int value = rs.getInt(column.name());
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case STRING -> generator.writeString(rs.getString(column.name()));
+                case TIMESTAMP -> {
+                    Timestamp value = rs.getTimestamp(column.name());
+                    generator.writeString(value != null ? value.toLocalDateTime().toString() : null);
+                }
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    // --- インポート ---
+
+    /**
+     * ID を含めてそのまま入れる INSERT (既にある行とぶつかれば失敗する)
+     */
+    String insertSql() {
+        return "INSERT INTO " + tableName + " (" + columns.stream().map(Column::name).collect(Collectors.joining(", ")) + ") " +
+                "VALUES (" + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+    }
+
+    /**
+     * 再開直後のバッチ用: 既にある行は無視する INSERT (無視した行は matchingRowCountSql で同じ内容か確かめる)
+     */
+    String insertIgnoringExistingSql() {
+        return insertSql() + " ON CONFLICT DO NOTHING";
+    }
+
+    /**
+     * ファイルの行と同じ内容の行の数 (0 か 1) を数える SQL。パラメーターは bindMatching で渡す
+     * (キーは = でインデックスを使い、それ以外の列は NULL 同士も等しいとみなす)
+     */
+    String matchingRowCountSql() {
+        return "SELECT COUNT(*) FROM " + tableName + " WHERE " + comparedColumns().stream()
+                .map(column -> column.name() + (Arrays.asList(keyColumns).contains(column.name()) ? " = ?" : " IS NOT DISTINCT FROM ?"))
+                .collect(Collectors.joining(" AND "));
+    }
+
+    /**
+     * ログ・エラー用の行のキー (例: "id=42"、"user_id=1,post_id=2")
+     */
+    String describeKey(JsonNode row) {
+        return Arrays.stream(keyColumns).map(column -> column + "=" + row.path(column).asText())
+                .collect(Collectors.joining(","));
+    }
+
+    void bindRow(PreparedStatement ps, JsonNode row) throws SQLException {
+        bind(ps, row, columns);
+    }
+
+    void bindMatching(PreparedStatement ps, JsonNode row) throws SQLException {
+        bind(ps, row, comparedColumns());
+    }
+
+    // INT の列はカウンター (like_count / comment_count)。インポートの最後に数え直すので、内容の比較には使わない
+    private List<Column> comparedColumns() {
+        return columns.stream().filter(column -> column.kind() != Kind.INT).toList();
+    }
+
+    private static void bind(PreparedStatement ps, JsonNode row, List<Column> columns) throws SQLException {
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            JsonNode value = row.get(column.name());
+            boolean isNull = value == null || value.isNull();
+            switch (column.kind()) {
+                case LONG -> {
+                    if (isNull) ps.setNull(i + 1, Types.BIGINT); else ps.setLong(i + 1, value.asLong());
+                }
+                case INT -> {
+                    if (isNull) ps.setNull(i + 1, Types.INTEGER); else ps.setInt(i + 1, value.asInt());
+                }
+                case STRING -> {
+                    if (isNull) ps.setNull(i + 1, Types.VARCHAR); else ps.setString(i + 1, value.asText());
+                }
+                case TIMESTAMP -> {
+                    if (isNull) ps.setNull(i + 1, Types.TIMESTAMP);
+                    else ps.setTimestamp(i + 1, Timestamp.valueOf(LocalDateTime.parse(value.asText())));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * フォーラム全体のエクスポート/インポート (transfer プロファイルのときだけ有効)
+ *
+ * forum.transfer.mode=export なら ForumExporter で、import なら ForumImporter で forum.transfer.file を処理する。
+ * どちらも途中で止まった場合は、同じ指定でもう一度実行すればチェックポイントから再開する。
+ *
+ * 実行方法:
+ * - Spring プロファイル: --spring.profiles.active=transfer (処理してからそのまま起動を続ける)
+ * - main クラス: ForumDataTransfer.main (Web サーバーを起動せず、処理したら終了する)
+ * 設定は application-transfer.properties を参照
+ */
+@Component
+@Profile("transfer")
+public class ForumDataTransfer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ForumDataTransfer.class);
+
+    @Autowired
+    private ForumExporter exporter;
+
+    @Autowired
+    private ForumImporter importer;
+
+    // export または import
+    @Value("${forum.transfer.mode:export}")
+    private String mode;
+
+    @Value("${forum.transfer.file:forum-export.jsonl}")
+    private Path file;
+
+    /**
+     * Web サーバーを起動せずにエクスポート/インポートだけ行う
+     * (例: java -cp app.jar -Dloader.main=com.example.demo.ForumDataTransfer org.springframework.boot.loader.launch.PropertiesLauncher
+     *      --spring.datasource.url=... --forum.transfer.mode=import --forum.transfer.file=/backup/forum.jsonl)
+     */
+    public static void main(String[] args) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("transfer")
+                .run(args)) {
+            log.info("エクスポート/インポートが完了しました");
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        switch (mode) {
+            case "export" -> exporter.export(file);
+            case "import" -> importer.importFrom(file);
+            default -> throw new IllegalArgumentException("forum.transfer.mode は export か import を指定してください: " + mode);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * フォーラム全体 (users / posts / comments / likes) を JSON Lines で書き出す
+ *
+ * - テーブルごとに主キー順で、前方向のみのカーソル (fetch-size 件ずつ取得) で読みながら書くので、
+ *   件数が増えてもメモリ使用量は変わらない (PostgreSQL はトランザクション内でないと fetch-size が効かない)
+ * - 全テーブルを REPEATABLE READ の読み取り専用トランザクション1つで読む (投稿とコメントの間で整合性が取れる)
+ * - checkpoint-interval 行ごとに、書き出し済みのバイト数と最後のキーをチェックポイントに保存する。
+ *   中断した後にもう一度実行すると、ファイルをそこまで切り詰めて続きのキーから書き出す
+ *   (再開後は新しいトランザクションで読むので、中断中に変わったデータは再開後の状態で書き出される)
+ */
+@Component
+public class ForumExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(ForumExporter.class);
+
+    static final String CHECKPOINT_OPERATION = "export";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${forum.transfer.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${forum.transfer.checkpoint-interval:10000}")
+    private int checkpointInterval;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @return 今回書き出した行数
+     */
+    public long export(Path file) throws IOException {
+        long started = System.nanoTime();
+        Path checkpointPath = TransferCheckpoint.pathFor(file, CHECKPOINT_OPERATION);
+        TransferCheckpoint checkpoint = TransferCheckpoint.load(checkpointPath);
+        if (checkpoint != null) {
+            log.info("エクスポートを再開します: {} ({} の {} より後ろから)", file, checkpoint.table(), checkpoint.lastKey());
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        long exported;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // 1. 再開する場合は、最後のチェックポイントより後ろ (書きかけの行を含む) を捨てる
+            long position = checkpoint != null ? checkpoint.position() : 0;
+            channel.truncate(position);
+            channel.position(position);
+            Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+            JsonGenerator generator = jsonFactory.createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // 行の区切りは自分で改行を書くので、JSON 値の間の区切り (デフォルトは空白) は入れない
+            generator.setRootValueSeparator(null);
+
+            // 2. テーブルを外部キーの順に書き出す
+            int startTable = checkpoint != null ? ForumDataTable.valueOf(checkpoint.table()).ordinal() : 0;
+            exported = transactionTemplate.execute(status -> {
+                long rows = 0;
+                for (ForumDataTable table : ForumDataTable.values()) {
+                    if (table.ordinal() < startTable) {
+                        continue;
+                    }
+                    long[] after = checkpoint != null && table.ordinal() == startTable
+                            ? table.parseKey(checkpoint.lastKey()) : table.firstKey();
+                    rows += exportTable(jdbcTemplate, table, after, channel, writer, generator, checkpointPath);
+                }
+                return rows;
+            });
+            generator.close();
+            writer.flush();
+        }
+
+        // 3. 最後まで書けたらチェックポイントは不要
+        TransferCheckpoint.delete(checkpointPath);
+        log.info("エクスポートが完了しました: {} ({} 行, {}ms)", file, exported, (System.nanoTime() - started) / 1_000_000);
+        return exported;
+    }
+
+    private long exportTable(JdbcTemplate jdbcTemplate, ForumDataTable table, long[] after, FileChannel channel,
+                             Writer writer, JsonGenerator generator, Path checkpointPath) {
+        long[] rows = {0};
+        jdbcTemplate.query(table.selectAfterSql(), ps -> table.bindAfter(ps, after), (RowCallbackHandler) rs -> {
+            try {
+                table.writeRow(rs, generator);
+                generator.writeRaw('\n');
+                if (++rows[0] % checkpointInterval == 0) {
+                    // バッファを書き出してから、ファイル上の位置を記録する
+                    generator.flush();
+                    writer.flush();
+                    new TransferCheckpoint(table.name(), table.keyOf(rs), channel.position()).save(checkpointPath);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("{}: {} 行を書き出しました", table.tableName(), rows[0]);
+        return rows[0];
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ForumExporter が書き出した JSON Lines を読み込む
+ *
+ * - 1行ずつ読み、同じテーブルの行を batch-size 件ずつ JDBC バッチで INSERT する (1バッチ = 1トランザクション)
+ * - ID はファイルの値をそのまま使うので、空の DB にだけ入れられる (テーブルに行があれば始める前に失敗する)。
+ *   既にある DB に混ぜると、ID の同じ別の投稿に、ファイルのコメント・いいね！が付いてしまうため
+ * - バッチをコミットするたびに、読み込み済みの行数をチェックポイントに保存する。
+ *   中断した後にもう一度実行すると、その行数を読み飛ばして続きから入れる
+ *   (コミットの後、チェックポイントの保存前に止まった場合は、再開直後のバッチが入れ済みになっている。
+ *   そのバッチだけは既にある行を無視し、ファイルと同じ内容 (カウンター以外) であることを確かめる。違えば失敗する)
+ * - 最後に users / posts / comments の ID のシーケンスを最大値の次に進め、カウンターを数え直す
+ */
+@Component
+public class ForumImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(ForumImporter.class);
+
+    static final String CHECKPOINT_OPERATION = "import";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${forum.transfer.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * @return 今回読み込んだ行数 (再開直後のバッチで、入れ済みだった行も含む)
+     */
+    public long importFrom(Path file) throws IOException {
+        long started = System.nanoTime();
+        Path checkpointPath = TransferCheckpoint.pathFor(file, CHECKPOINT_OPERATION);
+        TransferCheckpoint checkpoint = TransferCheckpoint.load(checkpointPath);
+        long skip = checkpoint != null ? checkpoint.position() : 0;
+        if (checkpoint != null) {
+            log.info("インポートを再開します: {} ({} 行目から)", file, skip + 1);
+        } else {
+            requireEmptyTables();
+        }
+        // 再開直後のバッチは、前回コミット済みかもしれない
+        boolean mayExist = checkpoint != null;
+
+        long imported = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            // 1. 前回コミット済みの行を読み飛ばす
+            long line = 0;
+            while (line < skip && reader.readLine() != null) {
+                line++;
+            }
+
+            // 2. テーブルが変わるか batch-size 件たまるごとに INSERT してチェックポイントを保存する
+            ForumDataTable current = null;
+            List<JsonNode> batch = new ArrayList<>(batchSize);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                if (text.isBlank()) {
+                    line++;
+                    continue;
+                }
+                JsonNode row = objectMapper.readTree(text);
+                ForumDataTable table = ForumDataTable.fromTableName(row.path("table").asText());
+                if (current != null && (table != current || batch.size() >= batchSize)) {
+                    insertBatch(current, batch, mayExist);
+                    mayExist = false;
+                    imported += batch.size();
+                    batch.clear();
+                    new TransferCheckpoint(current.name(), null, line).save(checkpointPath);
+                }
+                current = table;
+                batch.add(row);
+                line++;
+            }
+            if (!batch.isEmpty()) {
+                insertBatch(current, batch, mayExist);
+                imported += batch.size();
+                new TransferCheckpoint(current.name(), null, line).save(checkpointPath);
+            }
+        }
+
+        // 3. ID を指定して入れたので、シーケンスを進めておく (次の新規登録・投稿で ID がぶつからないように)
+        resyncSequences();
+
+        // 4. ファイルの like_count / comment_count は書き出し時点の値なので、実際の件数から数え直す
+        int repaired = postRepository.repairCounters();
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+
+        TransferCheckpoint.delete(checkpointPath);
+        log.info("インポートが完了しました: {} ({} 行, カウンター修復 {} 件, {}ms)",
+                file, imported, repaired, (System.nanoTime() - started) / 1_000_000);
+        return imported;
+    }
+
+    /**
+     * 新しくインポートを始める前に、どのテーブルも空であることを確かめる
+     */
+    private void requireEmptyTables() {
+        for (ForumDataTable table : ForumDataTable.values()) {
+            Boolean exists = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + table.tableName() + ")", Boolean.class);
+            if (Boolean.TRUE.equals(exists)) {
+                throw new IllegalStateException("インポート先の " + table.tableName() +
+                        " テーブルが空ではありません。空の DB にインポートしてください");
+            }
+        }
+    }
+
+    /**
+     * @param mayExist 前回コミット済みかもしれないバッチ (既にある行は無視し、ファイルと同じ内容か確かめる)
+     */
+    private void insertBatch(ForumDataTable table, List<JsonNode> rows, boolean mayExist) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!mayExist) {
+                jdbcTemplate.batchUpdate(table.insertSql(), rows, rows.size(), table::bindRow);
+                return;
+            }
+            jdbcTemplate.batchUpdate(table.insertIgnoringExistingSql(), rows, rows.size(), table::bindRow);
+            for (JsonNode row : rows) {
+                Integer matching = jdbcTemplate.query(table.matchingRowCountSql(), ps -> table.bindMatching(ps, row),
+                        rs -> rs.next() ? rs.getInt(1) : 0);
+                if (matching == null || matching == 0) {
+                    throw new IllegalStateException(table.tableName() + " の " + table.describeKey(row) +
+                            " が、ファイルと異なる内容で既にあります");
+                }
+            }
+        });
+    }
+
+    private void resyncSequences() {
+        boolean postgres = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName())));
+        for (ForumDataTable table : ForumDataTable.values()) {
+            if (!table.hasSequence()) {
+                continue;
+            }
+            long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table.tableName(), Long.class);
+            if (postgres) {
+                jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), ?, false)",
+                        Long.class, table.tableName(), next);
+            } else {
+                // H2 (テスト用) のシーケンスは V3__pooled_id_sequences.sql で PostgreSQL と同じ名前にしてある
+                jdbcTemplate.execute("ALTER SEQUENCE " + table.tableName() + "_id_seq RESTART WITH " + next);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.HibernateQueryMetrics;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * /actuator/prometheus に出すメトリクスのうち、自動設定されないものの登録
+ *
+ * 自動設定されるもの: http.server.requests (リクエスト), forum.controller (@Timed のハンドラー),
+ * spring.data.repository.invocations (リポジトリのメソッド), hibernate.* (エンティティ読み込み・コレクション取得・クエリ回数),
+ * hikaricp.* (接続プールの使用中/待ち/取得時間), hibernate.second.level.cache.* (二次キャッシュのリージョンごとのヒット・ミス)
+ */
+@Configuration
+public class ForumMetricsConfig {
+
+    /**
+     * 二次キャッシュ (SecondLevelCacheConfig) のリージョンごとのヒット率 (起動してからの累計。まだ読み込みがなければ NaN)
+     * ヒット・ミスの件数そのものは hibernate.second.level.cache.requests{region, result} (自動設定)
+     */
+    @Bean
+    public MeterBinder entityCacheHitRatio(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            for (String region : List.of(SecondLevelCacheConfig.USERS_REGION, SecondLevelCacheConfig.USERS_BY_USERNAME_REGION,
+                    SecondLevelCacheConfig.POSTS_REGION)) {
+                Gauge.builder("forum.cache.hit.ratio", statistics, s -> hitRatio(s.getDomainDataRegionStatistics(region)))
+                        .tag("region", region)
+                        .description("二次キャッシュのヒット率")
+                        .register(registry);
+            }
+        };
+    }
+
+    private static double hitRatio(CacheRegionStatistics region) {
+        if (region == null) {
+            return Double.NaN;
+        }
+        long requests = region.getHitCount() + region.getMissCount();
+        return requests == 0 ? Double.NaN : (double) region.getHitCount() / requests;
+    }
+
+    /**
+     * クエリごとの実行回数・実行時間 (hibernate.query.*)
+     * hibernate.generate_statistics=true のときだけ値が入る
+     */
+    @Bean
+    public MeterBinder hibernateQueryMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> new HibernateQueryMetrics(entityManagerFactory.unwrap(SessionFactory.class),
+                "entityManagerFactory", Tags.empty()).bindTo(registry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+
+/**
+ * ログイン中のユーザー (Spring Security のプリンシパル)
+ *
+ * ログイン時に UserDetailsServiceImpl が読み込んだユーザーの ID と権限をセッションに保持する。
+ * コントローラーは @AuthenticationPrincipal でこれを受け取るので、
+ * リクエストのたびに userRepository.findByUsername で ID を引き直す必要がない。
+ */
+public class ForumUserDetails extends org.springframework.security.core.userdetails.User {
+
+    private final Long id;
+    private final String role;
+
+    public ForumUserDetails(User user) {
+        super(user.getUsername(), user.getPassword(),
+                Collections.singletonList(new SimpleGrantedAuthority(user.getRole())));
+        this.id = user.getId();
+        this.role = user.getRole();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * 投稿・コメントの投稿者本人かどうか
+     * (LAZY の User プロキシでも getId() は DB にアクセスしない)
+     */
+    public boolean isOwnerOf(User owner) {
+        return owner != null && id.equals(owner.getId());
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * DBに UTC で保存している日時を、画面表示用の日本時間 (JST) 文字列にする
+ * ZoneId / DateTimeFormatter はスレッドセーフなので、呼び出しごとに作らず使い回す
+ */
+public final class JstDateFormat {
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+    private static final ZoneId JST = ZoneId.of("Asia/Tokyo");
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+
+    private JstDateFormat() {
+    }
+
+    /**
+     * @param utcDateTime UTC の日時
+     * @return "yyyy/MM/dd HH:mm" 形式の日本時間の文字列 (null の場合は空文字)
+     */
+    public static String format(LocalDateTime utcDateTime) {
+        if (utcDateTime == null) {
+            return "";
+        }
+        return utcDateTime.atZone(UTC).withZoneSameInstant(JST).format(FORMATTER);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * LikeWriteBehindBuffer が満杯で、待っても空かなかったときの例外 (503 Service Unavailable)
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class LikeBufferFullException extends RuntimeException {
+
+    public LikeBufferFullException() {
+        super("いいね！の処理が混み合っています。しばらくしてから再度お試しください。");
+    }
+}
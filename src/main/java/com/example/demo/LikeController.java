@@ -1,82 +1,82 @@
 package com.example.demo;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime; // ★ 1. import を追加
 import java.util.Map;
 import java.util.Optional;
 
+@Timed("forum.controller") // ハンドラーごとの処理時間 (タグ class, method)
 @RestController // これは @Controller ではなく、@RestController です
 @RequestMapping("/api/posts") // このコントローラーは /api/posts でアクセス
 public class LikeController {
 
-    @Autowired
-    private PostRepository postRepository;
-
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private LikeRepository likeRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // write-behind モード (forum.likes.write-behind.enabled=true) のときだけ存在する
+    @Autowired(required = false)
+    private LikeWriteBehindBuffer likeWriteBehindBuffer;
+
     /**
      * 「いいね」の状態を切り替えるAPI
      * (いいね！されていなければ追加、されていれば削除)
+     * 切り替えとカウンター更新は LikeRepository.toggleLike の1文で原子的に行う
+     * (投稿・いいねのエンティティは読み込まない)
      * @param postId いいね！する投稿のID
      * @return 更新後のいいね！数
      */
+    // PostgreSQL では1文。H2 などのフォールバック (行ロック・DELETE・INSERT・カウンター更新) では4文
+    @SqlStatementBudget(4)
     @PostMapping("/{postId}/toggle-like")
-    public ResponseEntity<?> toggleLike(@PathVariable Long postId) {
-
-        // 1. ログイン中のユーザー情報を取得
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username)
-                .orElse(null); // .orElseThrow はセキュリティリスクがあるので null に変更
+    public ResponseEntity<?> toggleLike(@PathVariable Long postId,
+                                        @AuthenticationPrincipal ForumUserDetails currentUser) {
 
+        // 1. ログイン中のユーザー (プリンシパルがユーザーIDを持っているので、DB検索は不要)
         if (currentUser == null) {
             // ログインしていない、またはセッションが切れている
             return ResponseEntity.status(401).body(Map.of("error", "認証が必要です。"));
         }
 
-        // 2. 投稿が存在するか確認
-        Post post = postRepository.findById(postId)
-                .orElse(null);
-
-        if (post == null) {
+        // 2. いいね！の追加/削除 と いいね！数の更新を1回で行う
+        //    (write-behind モードではバッファに記録し、DBへはまとめて書き込む)
+        Optional<LikeToggleResult> result;
+        try {
+            if (likeWriteBehindBuffer != null) {
+                result = likeWriteBehindBuffer.toggle(currentUser.getId(), postId);
+            } else {
+                result = likeRepository.toggleLike(currentUser.getId(), postId);
+            }
+        } catch (LikeBufferFullException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (DataIntegrityViolationException e) {
+            // 外部キー違反: ユーザーが削除済み (セッションだけ残っている) か、切り替えの途中で投稿が削除された
+            // (ユーザーの存在確認は、この失敗時にだけ行う)
+            if (!userRepository.existsById(currentUser.getId())) {
+                return ResponseEntity.status(401).body(Map.of("error", "認証が必要です。"));
+            }
             return ResponseEntity.status(404).body(Map.of("error", "投稿が見つかりません。"));
         }
 
-        // 3. 既に「いいね」しているか確認
-        Optional<Like> existingLike = likeRepository.findByPostIdAndUserId(postId, currentUser.getId());
-
-        int likeCount;
-
-        if (existingLike.isPresent()) {
-            // --- 既に「いいね」している場合：削除 ---
-            likeRepository.delete(existingLike.get());
-
-            // 削除後のいいね！数をDBから再取得（より正確性のため）
-            likeCount = likeRepository.countByPostId(postId);
-
-        } else {
-            // --- まだ「いいね」していない場合：追加 ---
-            Like newLike = new Like(new LikeId(currentUser.getId(), post.getId())); // ★ 2. LikeIdを使ってインスタンス化
-            newLike.setUser(currentUser);
-            newLike.setPost(post);
-            newLike.setCreatedAt(LocalDateTime.now()); // ★ 3. 作成日時をセット
-            likeRepository.save(newLike);
-
-            // 追加後のいいね！数をDBから再取得
-            likeCount = likeRepository.countByPostId(postId);
+        if (result.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "投稿が見つかりません。"));
         }
 
+        // 3. 一覧のキャッシュ (FeedCache / PostStatsCache) からこの投稿を捨て、ライブ更新で新しいいいね数を配信する
+        eventPublisher.publishEvent(FeedChangeEvent.likeCountChanged(postId, result.get().likeCount()));
+
         // 4. JavaScript側（フロントエンド）に、更新後のいいね！数を返す
-        return ResponseEntity.ok(Map.of("likeCount", likeCount, "userLiked", !existingLike.isPresent()));
+        return ResponseEntity.ok(Map.of("likeCount", result.get().likeCount(), "userLiked", result.get().liked()));
     }
 }
-
@@ -5,12 +5,14 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.Set; // ★ import を追加
 
 @Repository
 // ★ LikeId(複合主キー) を JpaRepository の2番目の型引数に指定
-public interface LikeRepository extends JpaRepository<Like, LikeId> {
+// ★ LikeRepositoryCustom: 1文で切り替える toggleLike (実装は LikeRepositoryImpl)
+public interface LikeRepository extends JpaRepository<Like, LikeId>, LikeRepositoryCustom {
 
     // --- LikeController で使用 ---
 
@@ -30,10 +32,12 @@ public interface LikeRepository extends JpaRepository<Like, LikeId> {
     // --- PostController (一覧表示) で使用 ---
 
     /**
-     * 特定のユーザーIDが「いいね！」したすべての投稿IDのセットを取得する
-     * (これはJPQLクエリ)
+     * 表示中のページの投稿 (postIds) のうち、特定のユーザーIDが「いいね！」した投稿IDのセットを取得する
+     * (以前はユーザーがいいね！したすべての投稿IDを読み込んでいたが、
+     *  主キー (user_id, post_id) でページ分の数件だけを調べるようにした)
      */
-    @Query("SELECT l.id.postId FROM Like l WHERE l.id.userId = :userId")
-    Set<Long> findLikedPostIdsByUserId(@Param("userId") Long userId);
+    @Query("SELECT l.id.postId FROM Like l WHERE l.id.userId = :userId AND l.id.postId IN :postIds")
+    Set<Long> findLikedPostIdsByUserIdAndPostIdIn(@Param("userId") Long userId,
+                                                 @Param("postIds") Collection<Long> postIds);
 }
 
@@ -0,0 +1,16 @@
+package com.example.demo;
+
+import java.util.Optional;
+
+/**
+ * LikeRepository に追加する独自メソッド (実装は LikeRepositoryImpl)
+ */
+public interface LikeRepositoryCustom {
+
+    /**
+     * いいね！を原子的に切り替え (あれば削除、なければ追加) し、posts.like_count も同時に更新する
+     * エンティティは読み込まない
+     * @return 切り替え結果。投稿が存在しない場合は空
+     */
+    Optional<LikeToggleResult> toggleLike(Long userId, Long postId);
+}
@@ -0,0 +1,99 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * LikeRepositoryCustom の実装 (Spring Data が "Impl" という名前で自動的に組み込む)
+ *
+ * 以前の toggleLike は「ユーザー検索 → 投稿検索 → いいね検索 → 保存/削除 → count」の5回の往復が必要で、
+ * ダブルクリックが同時に届くと likes(user_id, post_id) の主キー重複エラーになることがあった。
+ * ここでは JPA を通さず、SQL だけで切り替えとカウンター更新を行う。
+ */
+public class LikeRepositoryImpl implements LikeRepositoryCustom {
+
+    /**
+     * PostgreSQL 用: 削除 or 追加 とカウンター更新を「1つの SQL 文」(データ変更CTE) で行う
+     *
+     * - del: 既にいいね！していれば削除する
+     * - ins: 削除しなかった場合だけ追加する (同時実行で先に追加されていたら ON CONFLICT で何もしない)
+     * - upd: 実際に削除/追加できた件数だけ like_count を増減する (行ロックで直列化されるので値は失われない)
+     * - 投稿が存在しなければ target が空になり、結果は0行になる
+     */
+    private static final String POSTGRES_TOGGLE_SQL =
+            "WITH target AS (" +
+            "    SELECT id FROM posts WHERE id = ?" +
+            "), del AS (" +
+            "    DELETE FROM likes WHERE user_id = ? AND post_id IN (SELECT id FROM target)" +
+            "    RETURNING post_id" +
+            "), ins AS (" +
+            "    INSERT INTO likes (user_id, post_id, created_at)" +
+            "    SELECT ?, id, ? FROM target WHERE NOT EXISTS (SELECT 1 FROM del)" +
+            "    ON CONFLICT (user_id, post_id) DO NOTHING" +
+            "    RETURNING post_id" +
+            "), upd AS (" +
+            "    UPDATE posts SET like_count = like_count + (SELECT COUNT(*) FROM ins) - (SELECT COUNT(*) FROM del)" +
+            "    WHERE id IN (SELECT id FROM target)" +
+            "    RETURNING like_count" +
+            ") " +
+            "SELECT like_count, NOT EXISTS (SELECT 1 FROM del) AS liked FROM upd";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 接続先が PostgreSQL か (初回呼び出し時に判定する)
+    private volatile Boolean postgres;
+
+    @Override
+    @Transactional
+    public Optional<LikeToggleResult> toggleLike(Long userId, Long postId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (isPostgres()) {
+            List<LikeToggleResult> rows = jdbcTemplate.query(POSTGRES_TOGGLE_SQL,
+                    (rs, rowNum) -> new LikeToggleResult(rs.getBoolean("liked"), rs.getInt("like_count")),
+                    postId, userId, userId, now);
+            return rows.stream().findFirst();
+        }
+        return toggleLikeWithRowLock(userId, postId, now);
+    }
+
+    /**
+     * PostgreSQL 以外 (H2 など、データ変更CTEが使えないDB) 用:
+     * 投稿の行を FOR UPDATE でロックして同じ投稿への切り替えを直列化し、同じトランザクション内で処理する
+     */
+    private Optional<LikeToggleResult> toggleLikeWithRowLock(Long userId, Long postId, Timestamp now) {
+        List<Integer> locked = jdbcTemplate.queryForList(
+                "SELECT like_count FROM posts WHERE id = ? FOR UPDATE", Integer.class, postId);
+        if (locked.isEmpty()) {
+            return Optional.empty();
+        }
+
+        int deleted = jdbcTemplate.update("DELETE FROM likes WHERE user_id = ? AND post_id = ?", userId, postId);
+        int delta;
+        if (deleted > 0) {
+            delta = -deleted;
+        } else {
+            jdbcTemplate.update("INSERT INTO likes (user_id, post_id, created_at) VALUES (?, ?, ?)", userId, postId, now);
+            delta = 1;
+        }
+        jdbcTemplate.update("UPDATE posts SET like_count = like_count + ? WHERE id = ?", delta, postId);
+        return Optional.of(new LikeToggleResult(delta > 0, locked.get(0) + delta));
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName()));
+            postgres = result;
+        }
+        return Boolean.TRUE.equals(result);
+    }
+}
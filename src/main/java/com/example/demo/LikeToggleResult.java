@@ -0,0 +1,9 @@
+package com.example.demo;
+
+/**
+ * 「いいね」切り替えの結果
+ * @param liked 切り替え後に、ユーザーがいいね！している状態か
+ * @param likeCount 切り替え後のいいね！数 (posts.like_count)
+ */
+public record LikeToggleResult(boolean liked, int likeCount) {
+}
@@ -0,0 +1,504 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 「いいね」の書き込みをまとめて行う (write-behind) バッファ
+ * forum.likes.write-behind.enabled=true のときだけ有効になる (デフォルトは無効)
+ *
+ * 人気の投稿にいいね！が集中すると、1クリックごとのトランザクションで likes テーブルが
+ * 書き込みのボトルネックになる。このバッファは切り替えをメモリ上に記録し、
+ * - 同じ (ユーザー, 投稿) の ON/OFF の繰り返しは1件にまとめる (元の状態に戻れば何も書かない)
+ * - 一定間隔 (flush-interval-ms) または件数が flush-threshold を超えたときに JDBC バッチで書き込む
+ * - 件数が capacity に達したら、呼び出し元のスレッドで書き込みを手伝わせる (バックプレッシャー)。
+ *   それでも空かなければ LikeBufferFullException (503) にする
+ * - アプリ停止時には残りをすべて書き込む
+ *
+ * API の応答は「DBの値 + 書き込み中 (inFlight) + 未書き込み (pending)」の合計から作るので、
+ * 押した本人には常に最新の状態が見える。一覧画面のいいね数は最大で書き込み間隔ぶん遅れる。
+ * 書き込んだ投稿ごとに FeedChangeEvent (LIKES_WRITTEN) を送り、コミット後に一覧のキャッシュ・二次キャッシュから捨てさせる。
+ */
+@Component
+@ConditionalOnProperty(name = "forum.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeWriteBehindBuffer.class);
+
+    // 切り替え前の状態 (DB上の状態) と、切り替え後に書き込むべき状態
+    private static final class PendingLike {
+        final boolean base;
+        boolean desired;
+
+        PendingLike(boolean base) {
+            this.base = base;
+            this.desired = base;
+        }
+    }
+
+    // ロックの競合を減らすため、LikeId のハッシュで分割 (ストライプ化) したマップ
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        Map<LikeId, PendingLike> pending = new HashMap<>();
+    }
+
+    private static final int STRIPES = 16;
+
+    // 投稿の存在確認・現在のいいね数・ユーザーのいいね状態を1回で取得する
+    private static final String CURRENT_STATE_SQL =
+            "SELECT p.like_count, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM likes l WHERE l.user_id = ? AND l.post_id = p.id) THEN 1 ELSE 0 END AS liked " +
+            "FROM posts p WHERE p.id = ?";
+
+    // 投稿・ユーザーがすでに削除されていたら何もしない (外部キー違反でバッチ全体を失敗させない)
+    private static final String INSERT_SQL =
+            "INSERT INTO likes (user_id, post_id, created_at) " +
+            "SELECT ?, p.id, ? FROM posts p WHERE p.id = ? AND EXISTS (SELECT 1 FROM users u WHERE u.id = ?) " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String DELETE_SQL = "DELETE FROM likes WHERE user_id = ? AND post_id = ?";
+
+    // 書き込んだ投稿のカウンターは数え直す (バッファ以外の経路で変わっていても正確になる)
+    private static final String RECOUNT_SQL =
+            "UPDATE posts SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id) WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // バッファに保持できる最大件数 (これを超えると呼び出し元で書き込みを待つ)
+    @Value("${forum.likes.write-behind.capacity:10000}")
+    private int capacity;
+
+    // この件数を超えたら、次の定期実行を待たずに書き込みを始める
+    @Value("${forum.likes.write-behind.flush-threshold:2000}")
+    private int flushThreshold;
+
+    // バッファが満杯のとき、空くのを待つ最大時間
+    @Value("${forum.likes.write-behind.backpressure-timeout-ms:2000}")
+    private long backpressureTimeoutMs;
+
+    // JDBC バッチ1回あたりの件数
+    @Value("${forum.likes.write-behind.batch-size:500}")
+    private int batchSize;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger pendingSize = new AtomicInteger();
+    // 投稿ごとの、未書き込み分のいいね数の増減
+    private final ConcurrentHashMap<Long, AtomicInteger> pendingDeltas = new ConcurrentHashMap<>();
+
+    // 書き込み中 (コミット前) の内容。読み取りは read ロック、入れ替えは write ロックで行う
+    private final ReentrantReadWriteLock viewLock = new ReentrantReadWriteLock();
+    private Map<LikeId, PendingLike> inFlight = Map.of();
+    private Map<Long, Integer> inFlightDeltas = Map.of();
+
+    // 書き込み処理は同時に1つだけ
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // 停止中の書き込みではイベントを送らない (受け取る側のキャッシュは先に破棄されている)
+    private volatile boolean shuttingDown;
+
+    private Timer flushTimer;
+    private Counter flushedRows;
+    private Counter rejected;
+
+    public LikeWriteBehindBuffer() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("forum.likes.buffer.depth", pendingSize, AtomicInteger::get)
+                .description("未書き込みのいいね切り替え件数")
+                .register(meterRegistry);
+        Gauge.builder("forum.likes.buffer.in-flight", this, b -> b.inFlightSize())
+                .description("書き込み中のいいね切り替え件数")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("forum.likes.buffer.flush")
+                .description("バッファの書き込み (JDBC バッチ) にかかった時間")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        flushedRows = Counter.builder("forum.likes.buffer.flushed").register(meterRegistry);
+        rejected = Counter.builder("forum.likes.buffer.rejected").register(meterRegistry);
+        log.info("いいね！の write-behind モードが有効です (capacity={}, flush-threshold={})", capacity, flushThreshold);
+    }
+
+    /**
+     * いいね！を切り替え、バッファとDBを合わせた切り替え後の状態を返す
+     * @return 投稿が存在しない場合は空
+     * @throws LikeBufferFullException バッファが満杯で、待っても空かなかった場合
+     */
+    public Optional<LikeToggleResult> toggle(Long userId, Long postId) {
+        LikeId likeId = new LikeId(userId, postId);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMs);
+        while (true) {
+            viewLock.readLock().lock();
+            try {
+                Optional<LikeToggleResult> result = tryToggle(likeId);
+                if (result != null) {
+                    return result;
+                }
+            } finally {
+                viewLock.readLock().unlock();
+            }
+            // 満杯: 呼び出し元のスレッドで書き込みを行い、空くのを待つ
+            if (System.nanoTime() >= deadline || !flushNow(deadline)) {
+                rejected.increment();
+                throw new LikeBufferFullException();
+            }
+        }
+    }
+
+    /**
+     * @return 切り替え結果 (投稿がなければ空)。バッファが満杯で新しい件を追加できなければ null
+     */
+    private Optional<LikeToggleResult> tryToggle(LikeId likeId) {
+        Long postId = likeId.getPostId();
+        List<int[]> rows = jdbcTemplate.query(CURRENT_STATE_SQL,
+                (rs, rowNum) -> new int[]{rs.getInt("like_count"), rs.getInt("liked")},
+                likeId.getUserId(), postId);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        int dbLikeCount = rows.get(0)[0];
+        boolean dbLiked = rows.get(0)[1] == 1;
+
+        boolean liked;
+        Stripe stripe = stripeOf(likeId);
+        stripe.lock.lock();
+        try {
+            PendingLike entry = stripe.pending.get(likeId);
+            if (entry == null) {
+                if (pendingSize.get() >= capacity) {
+                    return null;
+                }
+                // 書き込み中の切り替えがあれば、それが「DB上の状態」になる予定
+                PendingLike flushing = inFlight.get(likeId);
+                entry = new PendingLike(flushing != null ? flushing.desired : dbLiked);
+                stripe.pending.put(likeId, entry);
+                pendingSize.incrementAndGet();
+            }
+            entry.desired = !entry.desired;
+            liked = entry.desired;
+            pendingDeltas.computeIfAbsent(postId, id -> new AtomicInteger()).addAndGet(liked ? 1 : -1);
+            if (entry.desired == entry.base) {
+                // ON→OFF (またはOFF→ON) で元に戻った: 書き込む必要はない
+                stripe.pending.remove(likeId);
+                pendingSize.decrementAndGet();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        if (pendingSize.get() >= flushThreshold) {
+            requestFlush();
+        }
+
+        AtomicInteger pendingDelta = pendingDeltas.get(postId);
+        int likeCount = dbLikeCount
+                + inFlightDeltas.getOrDefault(postId, 0)
+                + (pendingDelta != null ? pendingDelta.get() : 0);
+        return Optional.of(new LikeToggleResult(liked, Math.max(likeCount, 0)));
+    }
+
+    /**
+     * 一覧表示用: DBから取得した「いいね済み投稿ID」に、まだ書き込まれていない切り替えを反映する
+     */
+    public Set<Long> applyPending(Long userId, Set<Long> likedPostIds) {
+        Set<Long> result = new HashSet<>(likedPostIds);
+        viewLock.readLock().lock();
+        try {
+            inFlight.forEach((id, entry) -> applyTo(result, userId, id, entry));
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    stripe.pending.forEach((id, entry) -> applyTo(result, userId, id, entry));
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+        } finally {
+            viewLock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * まだDBに書き込まれていない、投稿ごとのいいね数の増減 (書き込み中の分を含む)
+     * DBのカウンター列にこれを足すと、toggle が返すいいね数と同じになる
+     */
+    public int pendingLikeDelta(Long postId) {
+        viewLock.readLock().lock();
+        try {
+            AtomicInteger pendingDelta = pendingDeltas.get(postId);
+            return inFlightDeltas.getOrDefault(postId, 0) + (pendingDelta != null ? pendingDelta.get() : 0);
+        } finally {
+            viewLock.readLock().unlock();
+        }
+    }
+
+    private static void applyTo(Set<Long> likedPostIds, Long userId, LikeId id, PendingLike entry) {
+        if (id.getUserId().equals(userId)) {
+            if (entry.desired) {
+                likedPostIds.add(id.getPostId());
+            } else {
+                likedPostIds.remove(id.getPostId());
+            }
+        }
+    }
+
+    /**
+     * 定期的な書き込み
+     */
+    @Scheduled(fixedDelayString = "${forum.likes.write-behind.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * アプリ停止時に、残っている切り替えをすべて書き込む
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        shuttingDown = true;
+        while (pendingSize.get() > 0) {
+            if (!flush()) {
+                log.error("停止時のいいね！書き込みに失敗しました。{} 件が失われます", pendingSize.get());
+                return;
+            }
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            taskExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    private boolean flushNow(long deadlineNanos) {
+        try {
+            long waitNanos = deadlineNanos - System.nanoTime();
+            if (waitNanos <= 0 || !flushLock.tryLock(waitNanos, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            return doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * バッファの内容をDBに書き込む
+     * @return 成功した (または書き込むものがなかった) 場合は true
+     */
+    public boolean flush() {
+        flushLock.lock();
+        try {
+            return doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean doFlush() {
+        if (pendingSize.get() == 0) {
+            return true;
+        }
+
+        // 1. 未書き込み分を「書き込み中」に移す (切り替え処理は read ロックを持っているので、ここで一瞬止まる)
+        Map<LikeId, PendingLike> batch = new HashMap<>();
+        Map<Long, Integer> deltas = new HashMap<>();
+        viewLock.writeLock().lock();
+        try {
+            for (Stripe stripe : stripes) {
+                batch.putAll(stripe.pending);
+                stripe.pending = new HashMap<>();
+            }
+            pendingSize.set(0);
+            pendingDeltas.forEach((postId, delta) -> {
+                if (delta.get() != 0) {
+                    deltas.put(postId, delta.get());
+                }
+            });
+            pendingDeltas.clear();
+            inFlight = batch;
+            inFlightDeltas = deltas;
+        } finally {
+            viewLock.writeLock().unlock();
+        }
+
+        // 2. JDBC バッチで書き込む (この間も切り替えは受け付ける)
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // コミットの瞬間だけ write ロックを取り、
+                // 「DBに反映済み」と「書き込み中」を二重に数える読み取りが起きないようにする
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        viewLock.writeLock().lock();
+                    }
+
+                    @Override
+                    public void afterCompletion(int completionStatus) {
+                        if (viewLock.isWriteLockedByCurrentThread()) {
+                            try {
+                                if (completionStatus == STATUS_COMMITTED) {
+                                    inFlight = Map.of();
+                                    inFlightDeltas = Map.of();
+                                }
+                            } finally {
+                                viewLock.writeLock().unlock();
+                            }
+                        }
+                    }
+                });
+                writeBatch(batch);
+            });
+            flushedRows.increment(batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("いいね！のバッファ書き込みに失敗しました ({} 件)。次回の書き込みで再試行します", batch.size(), e);
+            restore(batch, deltas);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void writeBatch(Map<LikeId, PendingLike> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        Set<Long> postIds = new HashSet<>();
+        batch.forEach((id, entry) -> {
+            if (entry.desired == entry.base) {
+                return;
+            }
+            if (entry.desired) {
+                inserts.add(new Object[]{id.getUserId(), now, id.getPostId(), id.getUserId()});
+            } else {
+                deletes.add(new Object[]{id.getUserId(), id.getPostId()});
+            }
+            postIds.add(id.getPostId());
+        });
+
+        batchUpdate(DELETE_SQL, deletes);
+        batchUpdate(INSERT_SQL, inserts);
+        List<Object[]> recounts = new ArrayList<>();
+        for (Long postId : postIds) {
+            recounts.add(new Object[]{postId});
+        }
+        batchUpdate(RECOUNT_SQL, recounts);
+        // いいね数が変わった投稿を、コミット後に一覧のキャッシュ (FeedCache / PostStatsCache) と二次キャッシュから捨てさせる
+        if (!shuttingDown) {
+            for (Long postId : postIds) {
+                eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.LIKES_WRITTEN, postId));
+            }
+        }
+    }
+
+    private void batchUpdate(String sql, List<Object[]> args) {
+        for (int from = 0; from < args.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(sql, args.subList(from, Math.min(from + batchSize, args.size())));
+        }
+    }
+
+    /**
+     * 書き込みに失敗したとき、書き込み中だった内容をバッファに戻す
+     */
+    private void restore(Map<LikeId, PendingLike> batch, Map<Long, Integer> deltas) {
+        viewLock.writeLock().lock();
+        try {
+            batch.forEach((id, failed) -> {
+                Stripe stripe = stripeOf(id);
+                PendingLike newer = stripe.pending.get(id);
+                if (newer == null) {
+                    stripe.pending.put(id, failed);
+                    pendingSize.incrementAndGet();
+                } else {
+                    // 失敗後に追加された切り替えは「失敗した書き込みが成功した前提」で作られているので、
+                    // 元のDB上の状態を基準に作り直す
+                    PendingLike merged = new PendingLike(failed.base);
+                    merged.desired = newer.desired;
+                    if (merged.desired == merged.base) {
+                        stripe.pending.remove(id);
+                        pendingSize.decrementAndGet();
+                    } else {
+                        stripe.pending.put(id, merged);
+                    }
+                }
+            });
+            deltas.forEach((postId, delta) ->
+                    pendingDeltas.computeIfAbsent(postId, k -> new AtomicInteger()).addAndGet(delta));
+            inFlight = Map.of();
+            inFlightDeltas = Map.of();
+        } finally {
+            viewLock.writeLock().unlock();
+        }
+    }
+
+    private int inFlightSize() {
+        return inFlight.size();
+    }
+
+    private Stripe stripeOf(LikeId likeId) {
+        return stripes[Math.floorMod(likeId.hashCode(), STRIPES)];
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 投稿一覧のライブ更新 (Server-Sent Events, GET /api/feed/events) の配信
+ *
+ * 1. FeedChangeEvent (コミット後) を受けて、接続中のすべてのブラウザに送る
+ *    - POST_CREATED → post-created, COMMENTS_CHANGED → comments-changed
+ *    - LIKE_COUNT_CHANGED → like-count。人気の投稿では1秒に何十回も変わるので、
+ *      forum.live.like-window-ms の間は投稿ごとに最新の値だけを残し、まとめて1回送る
+ * 2. イベントの JSON とフレームは1回だけ作り、すべての接続で使い回す
+ * 3. 接続ごとに上限付きのキューを持ち、送信はライブ更新専用のスレッドで接続ごとに1つずつ行う
+ *    (applicationTaskExecutor は使わないので、いいね！の書き込み (LikeWriteBehindBuffer) などを待たせない)。
+ *    読むのが遅いブラウザのキューがあふれたら古いイベントから捨てる (書き込み側は待たせない)
+ * 4. 送信 (emitter.send) はブラウザが読まないとソケットのバッファが詰まってブロックする。
+ *    - 専用のスレッドは forum.live.sender-threads 個。仮想スレッドモード (spring.threads.virtual.enabled) では
+ *      送信ごとに仮想スレッドを使うので、詰まった接続がほかの接続の送信を待たせることはない
+ *    - 1回の送信が forum.live.send-timeout を超えて終わらない接続には、それ以降のイベントを送らない
+ *      (ブロックしたスレッドは Tomcat の書き込みタイムアウトで解放される)。
+ *      プラットフォームスレッドでは、詰まった接続が sender-threads 個を超えると、その間ほかの接続への送信が遅れる
+ *
+ * 待機中の接続はスレッドを使わない (サーブレットの非同期処理) ので、1ノードで1万以上の接続を保持できる。
+ * Open Session In View は無効 (application.properties) なので、接続ごとに DB 接続や Hibernate のセッションも持たない。
+ */
+@Component
+public class LiveFeedBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveFeedBroadcaster.class);
+
+    static final String POST_CREATED_EVENT = "post-created";
+    static final String COMMENTS_CHANGED_EVENT = "comments-changed";
+    static final String LIKE_COUNT_EVENT = "like-count";
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 接続ごとのキューに保持する最大件数 (これを超えると古いものから捨てる)
+    @Value("${forum.live.queue-capacity:32}")
+    private int queueCapacity;
+
+    // 同時接続数の上限 (これを超えた接続は 503。通常のページ用に Tomcat の接続数を残しておく)
+    @Value("${forum.live.max-connections:15000}")
+    private int maxConnections;
+
+    // 1つの接続を保持する時間。過ぎたら閉じ、ブラウザ (EventSource) に再接続させる
+    @Value("${forum.live.timeout:30m}")
+    private Duration timeout;
+
+    // 切断時にブラウザが再接続するまでの待ち時間 (SSE の retry)
+    @Value("${forum.live.reconnect-delay:5s}")
+    private Duration reconnectDelay;
+
+    // 送信に使うスレッド数 (プラットフォームスレッドのとき。仮想スレッドモードでは送信ごとに仮想スレッドを使う)
+    @Value("${forum.live.sender-threads:32}")
+    private int senderThreads;
+
+    // 1回の送信にこれ以上かかっている接続は、読めていないとみなしてイベントを送るのをやめる
+    @Value("${forum.live.send-timeout:10s}")
+    private Duration sendTimeout;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // まだ送っていない、投稿ごとの最新のいいね数
+    private final ConcurrentHashMap<Long, Integer> pendingLikeCounts = new ConcurrentHashMap<>();
+
+    private Executor senderExecutor;
+    private Set<DataWithMediaType> heartbeatFrame;
+    private Counter sentEvents;
+    private Counter droppedEvents;
+    private Counter stalledConnections;
+
+    @PostConstruct
+    void init() {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor virtualThreads = new SimpleAsyncTaskExecutor("live-feed-");
+            virtualThreads.setVirtualThreads(true);
+            senderExecutor = virtualThreads;
+        } else {
+            // 接続ごとに送信タスクは1つまでなので、待ち行列は接続数の上限までで足りる
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(maxConnections),
+                    task -> {
+                        Thread thread = new Thread(task, "live-feed-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            senderExecutor = pool;
+        }
+        heartbeatFrame = frame(SseEmitter.event().comment("ping"));
+        Gauge.builder("forum.live.connections", subscribers, Set::size)
+                .description("ライブ更新 (SSE) の接続数")
+                .register(meterRegistry);
+        sentEvents = Counter.builder("forum.live.events.sent")
+                .description("ライブ更新で送ったイベント数 (接続ごとに数える)")
+                .register(meterRegistry);
+        droppedEvents = Counter.builder("forum.live.events.dropped")
+                .description("キューがあふれて捨てたイベント数")
+                .register(meterRegistry);
+        stalledConnections = Counter.builder("forum.live.connections.stalled")
+                .description("送信が send-timeout を超えて終わらず、配信をやめた接続数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 新しい接続を登録する
+     * @return 接続数が上限に達している場合は空
+     */
+    public Optional<SseEmitter> subscribe() {
+        if (subscribers.size() >= maxConnections) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        register(emitter);
+        return Optional.of(emitter);
+    }
+
+    void register(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(() -> {
+            subscriber.close();
+            emitter.complete();
+        });
+        emitter.onError(e -> subscriber.close());
+        subscribers.add(subscriber);
+        // 最初に retry を送ってレスポンスを始める (ブラウザ側で open になる)
+        subscriber.offer(frame(SseEmitter.event().reconnectTime(reconnectDelay.toMillis())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeedChange(FeedChangeEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        switch (event.type()) {
+            case POST_CREATED -> broadcast(POST_CREATED_EVENT, new PostEvent(event.postId()));
+            case COMMENTS_CHANGED -> broadcast(COMMENTS_CHANGED_EVENT, new PostEvent(event.postId()));
+            case LIKE_COUNT_CHANGED -> pendingLikeCounts.put(event.postId(), event.likeCount());
+            // 更新・削除・一括修正は一覧を開き直したときに反映されれば十分なので送らない
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * ためておいたいいね数を、投稿ごとに1回ずつ送る
+     */
+    @Scheduled(fixedDelayString = "${forum.live.like-window-ms:250}")
+    public void flushLikeCounts() {
+        for (Long postId : pendingLikeCounts.keySet()) {
+            Integer likeCount = pendingLikeCounts.remove(postId);
+            if (likeCount != null && !subscribers.isEmpty()) {
+                broadcast(LIKE_COUNT_EVENT, new LikeCountEvent(postId, likeCount));
+            }
+        }
+    }
+
+    /**
+     * 何も送るものがなくても定期的にコメント行を送る
+     * (途中のプロキシに接続を切られないようにし、切れた接続はここで送信に失敗して片付く)
+     */
+    @Scheduled(fixedDelayString = "${forum.live.heartbeat-interval-ms:25000}")
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(heartbeatFrame);
+        }
+    }
+
+    /**
+     * 送信が send-timeout を超えて終わらない接続への配信をやめる
+     * (キューにたまったイベントも捨てる。emitter は送信中のスレッドがロックしているので、ここでは触らない)
+     */
+    @Scheduled(fixedDelayString = "${forum.live.stall-check-interval-ms:1000}")
+    public void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.sendStartedAt;
+            if (startedAt != 0 && now - startedAt > sendTimeout.toNanos()) {
+                log.debug("ライブ更新の送信が {} ms を超えて終わらないため、この接続への配信をやめます", sendTimeout.toMillis());
+                subscriber.close();
+                stalledConnections.increment();
+            }
+        }
+    }
+
+    /**
+     * 停止時はすべての接続を閉じる (開いたままだと graceful shutdown が終わらない)
+     */
+    @PreDestroy
+    public void closeAll() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+            subscriber.emitter.complete();
+        }
+        if (senderExecutor instanceof ExecutorService pool) {
+            pool.shutdownNow();
+        }
+    }
+
+    int connectionCount() {
+        return subscribers.size();
+    }
+
+    private void broadcast(String name, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        Set<DataWithMediaType> frame = frame(SseEmitter.event().name(name).data(json));
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    private static Set<DataWithMediaType> frame(SseEmitter.SseEventBuilder builder) {
+        return Collections.unmodifiableSet(builder.build());
+    }
+
+    record PostEvent(Long postId) {
+    }
+
+    record LikeCountEvent(Long postId, int likeCount) {
+    }
+
+    /**
+     * 1つの接続。キューへの出し入れは this で同期し、送信はロックの外で行う
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final ArrayDeque<Set<DataWithMediaType>> queue = new ArrayDeque<>();
+        // 送信タスクが動いているか (接続ごとに1つだけにして、順番を保つ)
+        private boolean sending;
+        private boolean closed;
+        // 送信中の emitter.send を始めた時刻 (送信中でなければ 0)
+        private volatile long sendStartedAt;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Set<DataWithMediaType> frame) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() >= queueCapacity) {
+                    queue.pollFirst();
+                    droppedEvents.increment();
+                }
+                queue.addLast(frame);
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            try {
+                senderExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 停止中など
+                log.debug("ライブ更新の送信を開始できませんでした", e);
+                close();
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Set<DataWithMediaType> frame;
+                synchronized (this) {
+                    frame = queue.pollFirst();
+                    if (frame == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                sendStartedAt = System.nanoTime();
+                try {
+                    emitter.send(frame);
+                    sentEvents.increment();
+                } catch (IOException | IllegalStateException e) {
+                    // ブラウザが切断済み (後片付けはコンテナが onError / onCompletion で行う)
+                    close();
+                    return;
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            subscribers.remove(this);
+        }
+    }
+}
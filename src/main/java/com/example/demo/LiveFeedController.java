@@ -0,0 +1,32 @@
+package com.example.demo;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 投稿一覧のライブ更新 (Server-Sent Events)
+ * 一覧のページ (list.html) が EventSource で接続し、新しい投稿・コメントのお知らせと、いいね数の変化を受け取る
+ */
+@Timed("forum.controller") // ハンドラーごとの処理時間 (タグ class, method)
+@RestController
+public class LiveFeedController {
+
+    @Autowired
+    private LiveFeedBroadcaster liveFeedBroadcaster;
+
+    /**
+     * イベントのストリームを開く (接続数が上限に達している場合は 503)
+     */
+    @SqlStatementBudget(0)
+    @GetMapping(path = "/api/feed/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events() {
+        return liveFeedBroadcaster.subscribe()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(503).build());
+    }
+}
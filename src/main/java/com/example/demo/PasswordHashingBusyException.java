@@ -0,0 +1,17 @@
+package com.example.demo;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * パスワードのハッシュ計算 (BoundedPasswordEncoder) の待ち行列が満杯のときの例外 (503 Service Unavailable)
+ * ログイン中に発生した場合も Spring Security の失敗ハンドラーに届くよう、AuthenticationException のサブクラスにしている
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+
+    public PasswordHashingBusyException() {
+        super("ログイン・登録の処理が混み合っています。しばらくしてから再度お試しください。");
+    }
+}
@@ -1,19 +1,27 @@
 package com.example.demo;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.Set;
 // ▼▼▼ 【ステップ3】 java.util.List をインポート ▼▼▼
 import java.util.List;
 
 @Entity
 @Table(name = "posts")
+// 二次キャッシュ (SecondLevelCacheConfig)。コメント数の更新 (JPQL の一括 UPDATE) のたびにリージョン全体が消える
+// (いいね！は JdbcTemplate で更新し、EntityCacheEvictor がその投稿だけを消す)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.POSTS_REGION)
 public class Post {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // ID はシーケンスから 50 個ずつまとめて確保する (IDENTITY だと INSERT ごとに ID を受け取る必要があり、バッチにできない)
+    // allocationSize は V3__pooled_id_sequences.sql の INCREMENT BY と合わせる
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "posts_id_seq")
+    @SequenceGenerator(name = "posts_id_seq", sequenceName = "posts_id_seq", allocationSize = 50)
     private Long id;
 
     private String title;
@@ -23,12 +31,31 @@ public class Post {
 
     private LocalDateTime createdAt;
 
+    // --- 表示用に保存時に作っておく列 (ContentRenderer / JstDateFormat) ---
+    // 一覧を表示するたびに本文の変換や日時の整形をしないため
+    @Column(name = "content_html", columnDefinition = "TEXT")
+    private String contentHtml;
+
+    @Column(name = "created_at_display", length = 16)
+    private String createdAtDisplay;
+
+    // --- いいね数・コメント数のカウンター (非正規化) ---
+    // 一覧表示で likes / comments を全件読み込まずに件数を出すための列。
+    // 値の更新は PostRepository の原子的な UPDATE 文だけで行うため、エンティティ経由では書き込まない
+    @Column(name = "like_count", insertable = false, updatable = false)
+    private int likeCount;
+
+    @Column(name = "comment_count", insertable = false, updatable = false)
+    private int commentCount;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
     // --- Likesの関連付け ---
-    @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    // 投稿を削除したときのいいね・コメントの削除は DB の ON DELETE CASCADE に任せる
+    // (cascade / orphanRemoval にすると、Hibernate が全件読み込んで1行ずつ削除してしまう)
+    @OneToMany(mappedBy = "post", fetch = FetchType.LAZY)
     private Set<Like> likes;
 
     // --- ▼▼▼ 【ステップ3】 Comments の関連付けを追加 ▼▼▼ ---
@@ -36,7 +63,7 @@ public class Post {
      * この投稿に紐づくコメントのリスト
      * コメントは作成日時の昇順（古い順）で並び替えられます
      */
-    @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "post", fetch = FetchType.LAZY)
     @OrderBy("createdAt ASC") // コメントを古い順にソート
     private List<Comment> comments; // 順序を保持するために List を使用
     // --- ▲▲▲ ここまで追加 ▲▲▲ ---
@@ -84,6 +111,15 @@ public class Post {
         this.user = user;
     }
 
+    // --- カウンターのゲッター (読み取り専用) ---
+    public int getLikeCount() {
+        return likeCount;
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+
     // --- Likesのゲッター/セッター ---
     public Set<Like> getLikes() {
         return likes;
@@ -104,22 +140,34 @@ public class Post {
     // --- ▲▲▲ ここまで追加 ▲▲▲ ---
 
 
+    public String getContentHtml() {
+        return contentHtml;
+    }
+
+    public String getCreatedAtDisplay() {
+        return createdAtDisplay;
+    }
+
     // --- JST変換用メソッド ---
     public String getFormattedCreatedAt() {
-        if (this.createdAt == null) {
-            return "";
-        }
-        ZoneId utcZone = ZoneId.of("UTC");
-        ZoneId jstZone = ZoneId.of("Asia/Tokyo");
-        LocalDateTime jstDateTime = this.createdAt.atZone(utcZone)
-                .withZoneSameInstant(jstZone)
-                .toLocalDateTime();
-        return jstDateTime.format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"));
+        return createdAtDisplay != null ? createdAtDisplay : JstDateFormat.format(createdAt);
     }
 
     // --- コールバックメソッド ---
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now(ZoneId.of("UTC"));
+        render();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        render();
+    }
+
+    // 本文の表示用 HTML と、表示用の日時 (JST) を作る
+    private void render() {
+        this.contentHtml = ContentRenderer.toHtml(content);
+        this.createdAtDisplay = JstDateFormat.format(createdAt);
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.example.demo;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 投稿一覧の1件分 (読み取り専用の DTO)
+ * 投稿者名・いいね数・コメント数と、表示する新しい方のコメント (古い順) を持つ
+ * 本文と日時は保存時に作った表示用の値 (contentHtml / createdAtDisplay) を持つ
+ */
+public record PostCard(Long id,
+                       String title,
+                       String contentHtml,
+                       String authorName,
+                       LocalDateTime createdAt,
+                       String createdAtDisplay,
+                       int likeCount,
+                       int commentCount,
+                       List<CommentPreview> comments) {
+
+    /**
+     * JPQL のコンストラクタ式用 (コメントは PostFeedLoader で後から組み合わせる)
+     * @param rawContent content_html がまだ作られていない行 (バックフィル前) のときだけ本文が渡される
+     */
+    public PostCard(Long id, String title, String rawContent, String contentHtml, String authorName,
+                    LocalDateTime createdAt, String createdAtDisplay, int likeCount, int commentCount) {
+        this(id, title,
+                contentHtml != null ? contentHtml : ContentRenderer.toHtml(rawContent),
+                authorName, createdAt,
+                createdAtDisplay != null ? createdAtDisplay : JstDateFormat.format(createdAt),
+                likeCount, commentCount, List.of());
+    }
+
+    public PostCard withComments(List<CommentPreview> comments) {
+        return new PostCard(id, title, contentHtml, authorName, createdAt, createdAtDisplay,
+                likeCount, commentCount, List.copyOf(comments));
+    }
+
+    public PostCard withLikeCount(int likeCount) {
+        return new PostCard(id, title, contentHtml, authorName, createdAt, createdAtDisplay,
+                likeCount, commentCount, comments);
+    }
+
+    /**
+     * 表示していない、より古いコメントがあるか
+     */
+    public boolean hasOlderComments() {
+        return commentCount > comments.size();
+    }
+
+    /**
+     * 「以前のコメントを表示」で使うカーソル (表示中の一番古いコメント)
+     */
+    public String olderCommentsCursor() {
+        return comments.isEmpty() ? null : comments.get(0).cursor();
+    }
+
+    /**
+     * このページの次 (より古い投稿) を読み込むためのカーソル
+     */
+    public String cursor() {
+        return new FeedCursor(createdAt, id).toString();
+    }
+}
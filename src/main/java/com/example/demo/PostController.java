@@ -1,27 +1,39 @@
 package com.example.demo;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes; // ★ コメント機能のため追加
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+@Timed("forum.controller") // ハンドラーごとの処理時間 (タグ class, method)
 @Controller
 public class PostController {
 
@@ -37,64 +49,107 @@ public class PostController {
     @Autowired
     private CommentRepository commentRepository;
 
+    @Autowired
+    private PostCountCache postCountCache;
+
+    @Autowired
+    private FeedCache feedCache;
+
+    @Autowired
+    private ForumContentVersion forumContentVersion;
+
+    // 書き込み後に FeedChangeEvent を送り、一覧のキャッシュ (FeedCache / PostCountCache) を更新させる
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // いいね！の write-behind モードのときだけ存在する (未書き込みの切り替えを一覧に反映するため)
+    @Autowired(required = false)
+    private LikeWriteBehindBuffer likeWriteBehindBuffer;
+
+    // 1ページあたりの表示件数 (SqlStatementBudgetTests でも1ページ分のデータを作るのに使う)
+    static final int PAGE_SIZE = 5;
+
+    // ページ番号のリンクを現在のページの前後何ページまで表示するか
+    private static final int PAGE_NUMBER_WINDOW = 4;
+
+    // 一覧にページ番号 (1, 2, 3...) を表示するか (false なら「次へ」のカーソルリンクのみ)
+    @Value("${forum.feed.page-numbers:true}")
+    private boolean pageNumbersEnabled;
+
     // --- ヘルパーメソッド ---
     /**
      * テキストエリアから送信された改行コード (\r\n) を \n に正規化する
+     * (HotPathBenchmark から呼ぶため package-private)
      */
-    private String normalizeContent(String content) {
+    static String normalizeContent(String content) {
         if (content != null) {
             // WindowsのCRLF(\r\n)をLF(\n)に統一
-            return content.replaceAll("\r\n", "\n");
+            // (正規表現の replaceAll は呼び出しごとに Pattern をコンパイルするので、文字列置換の replace を使う)
+            return content.replace("\r\n", "\n");
         }
         return null;
     }
 
     /**
-     * トップページ（投稿一覧） (★ N+1問題対策 修正済み)
+     * トップページ（投稿一覧） (★ N+1問題対策 / キーセットページネーション対応)
      * @param model ビューに渡すモデル
      * @param page リクエストされたページ番号 (デフォルトは0)
+     * @param before キーセットページネーション用カーソル ("createdAt,id")。指定時は page より優先
      * @return テンプレート名
      */
+    // 投稿ID・投稿・コメント・概算の総数・いいね済みの投稿ID (キャッシュに当たればいいね済みの1文だけ、未ログインで 304 なら0文)
+    @SqlStatementBudget(5)
     @GetMapping("/")
-    public String index(Model model, @RequestParam(name = "page", defaultValue = "0") int page) {
-
-        // 1. ページネーションの設定 (1ページあたり5件、作成日時の降順)
-        Pageable pageable = PageRequest.of(page, 5, Sort.by("createdAt").descending());
-
-        // 2. ★ N+1対策: まずIDのリストだけをページネーションで取得
-        Page<Long> postIdsPage = postRepository.findPostIdsByOrderByCreatedAtDesc(pageable);
-        List<Long> postIds = postIdsPage.getContent();
-
-        List<Post> posts;
-        if (postIds.isEmpty()) {
-            posts = Collections.emptyList();
-        } else {
-            // 3. ★ N+1対策: 修正したクエリを呼び出す
-            //    (User, Likes, Comments をJOIN FETCHする)
-            // ▼▼▼ 【ここを修正】 ▼▼▼
-            posts = postRepository.findAllPostsWithUserAndLikes(postIds);
-            // ▲▲▲ 修正 ▲▲▲
-
-            // 4. (重要) DBから取得したリストはID順になっているため、元のcreatedAt順（postIdsの順）に並び替える
-            posts.sort((p1, p2) -> Long.compare(postIds.indexOf(p1.getId()), postIds.indexOf(p2.getId())));
+    public String index(Model model,
+                        @AuthenticationPrincipal ForumUserDetails currentUser,
+                        @RequestParam(name = "page", defaultValue = "0") int page,
+                        @RequestParam(name = "before", required = false) String before,
+                        WebRequest webRequest,
+                        HttpServletResponse response) {
+
+        // 0. 未ログインの一覧は全員に同じ内容なので、前回の表示から何も書き込まれていなければ
+        //    304 を返す (一覧の読み込みも描画もしない)。ログイン中はいいね済みの表示があるので対象外
+        if (currentUser == null) {
+            if (webRequest.checkNotModified(forumContentVersion.etag())) {
+                return null;
+            }
+            // ブラウザに保存させて、次回は If-None-Match で確認させる (ログイン中の画面と URL が同じなので共有キャッシュには置かせない)
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
         }
 
-        // 5. Page<Post> オブジェクトを再構築
-        Page<Post> postPage = new PageImpl<>(posts, pageable, postIdsPage.getTotalElements());
-
-        model.addAttribute("postPage", postPage);
+        // 1. ★ N+1対策 / 直積対策: IDのリストを取得してから、投稿と表示するコメントを
+        //    関連ごとに IN (:ids) のクエリで読み込む (PostFeedLoader に移動)
+        //    一覧は読み取り専用の DTO (PostCard) で描画するので、テンプレートでの遅延読み込みは発生しない
+        //    ユーザーに依存しない部分なので FeedCache にキャッシュする (キャッシュに当たれば SQL なし)
+        FeedCursor cursor = FeedCursor.parse(before);
+        page = Math.max(page, 0);
+        FeedPage feed = feedCache.getPage(cursor, page, PAGE_SIZE);
+
+        model.addAttribute("feed", feed.posts());
+        model.addAttribute("keysetMode", cursor != null);
+        // 2. 「次へ」リンクは常にキーセット (最後に表示した投稿をカーソルにする)
+        model.addAttribute("nextCursor", feed.nextCursor());
+
+        // 3. ページ番号表示 (任意)。総数は count(*) ではなくキャッシュした概算値を使う
+        if (cursor == null && pageNumbersEnabled) {
+            Pageable pageable = PageRequest.of(page, PAGE_SIZE);
+            Page<PostCard> postPage = new PageImpl<>(feed.posts(), pageable, postCountCache.getApproximateCount());
+            model.addAttribute("postPage", postPage);
+            // すべてのページ番号を出すと投稿数に比例してリンクが増えるので、現在のページの前後だけにする
+            int pageWindowEnd = Math.max(0, Math.min(postPage.getTotalPages() - 1, page + PAGE_NUMBER_WINDOW));
+            model.addAttribute("pageWindowStart", Math.min(Math.max(0, page - PAGE_NUMBER_WINDOW), pageWindowEnd));
+            model.addAttribute("pageWindowEnd", pageWindowEnd);
+        }
 
-        // 6. ログイン中のユーザーがいいねした投稿IDのセットを渡す
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth != null && auth.isAuthenticated() && !(auth.getPrincipal() instanceof String)) {
-            String username = auth.getName();
-            User currentUser = userRepository.findByUsername(username).orElse(null);
-            if (currentUser != null) {
-                Set<Long> likedPostIds = likeRepository.findLikedPostIdsByUserId(currentUser.getId());
-                model.addAttribute("currentUserLikePostIds", likedPostIds);
-            } else {
-                model.addAttribute("currentUserLikePostIds", Collections.emptySet());
+        // 4. ログイン中のユーザーがいいねした投稿IDのセットを渡す (表示中のページの投稿分だけ。キャッシュしない)
+        //    (ユーザーIDはプリンシパルが持っているので、ユーザー名での検索は不要。未ログインなら null)
+        if (currentUser != null && !feed.posts().isEmpty()) {
+            List<Long> postIds = feed.posts().stream().map(PostCard::id).toList();
+            Set<Long> likedPostIds = likeRepository.findLikedPostIdsByUserIdAndPostIdIn(currentUser.getId(), postIds);
+            if (likeWriteBehindBuffer != null) {
+                likedPostIds = likeWriteBehindBuffer.applyPending(currentUser.getId(), likedPostIds);
             }
+            model.addAttribute("currentUserLikePostIds", likedPostIds);
         } else {
             model.addAttribute("currentUserLikePostIds", Collections.emptySet());
         }
@@ -117,27 +172,17 @@ public class PostController {
      * ログイン中のユーザー情報を取得し、投稿に紐づける
      */
     @PostMapping("/create")
-    public String createPost(@ModelAttribute Post post) {
-        // 現在ログイン中のユーザー名を取得
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        // ユーザー名を使って、データベースから User オブジェクトを取得
-        User currentUser = userRepository.findByUsername(username)
-                .orElse(null); // orElseThrow の代わりに orElse(null) を使う
-
-        // もしDBにユーザーがいなければ (セッションだけ残っている場合)
-        if (currentUser == null) {
-            // ログアウトさせてセッションをクリアし、ログインページに戻す
-            return "redirect:/logout";
-        }
-
-        // 投稿(Post)に、見つけたユーザー(User)をセットする
-        post.setUser(currentUser);
+    public String createPost(@ModelAttribute Post post, @AuthenticationPrincipal ForumUserDetails currentUser) {
+        // 投稿(Post)に、ログイン中のユーザーをセットする
+        // (getReferenceById は SELECT を発行しない。DBにユーザーがいなければ (セッションだけ残っている場合)
+        //  INSERT が外部キー違反になり、handleDataIntegrityViolation でログアウトさせる)
+        post.setUser(userRepository.getReferenceById(currentUser.getId()));
 
         // ★ 改行コードを正規化してセット
         post.setContent(normalizeContent(post.getContent()));
 
         postRepository.save(post);
+        eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.POST_CREATED, post.getId()));
         return "redirect:/";
     }
 
@@ -145,12 +190,11 @@ public class PostController {
      * 編集フォームの表示 (★ 安全なコードに修正済み)
      */
     @GetMapping("/edit/{id}")
-    public String showEditForm(@PathVariable Long id, Model model) {
+    public String showEditForm(@PathVariable Long id, Model model, @AuthenticationPrincipal ForumUserDetails currentUser) {
         Post post = postRepository.findById(id).orElse(null);
-        String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        // (修正) post.getUser() != null のチェックを追加
-        if (post == null || post.getUser() == null || !post.getUser().getUsername().equals(currentUsername)) {
+        // 投稿者本人かどうかはユーザーIDで比較する (投稿者の User を読み込まない)
+        if (post == null || !currentUser.isOwnerOf(post.getUser())) {
             return "redirect:/";
         }
 
@@ -162,18 +206,18 @@ public class PostController {
      * 更新処理 (★ 改行コード正規化を追加)
      */
     @PostMapping("/update")
-    public String updatePost(@ModelAttribute Post post) {
-        String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
+    @Transactional
+    public String updatePost(@ModelAttribute Post post, @AuthenticationPrincipal ForumUserDetails currentUser) {
         Post existingPost = postRepository.findById(post.getId()).orElse(null);
 
-        // (修正) existingPost.getUser() != null のチェックを追加
-        if (existingPost != null && existingPost.getUser() != null && existingPost.getUser().getUsername().equals(currentUsername)) {
+        if (existingPost != null && currentUser.isOwnerOf(existingPost.getUser())) {
             existingPost.setTitle(post.getTitle());
 
             // ★ 改行コードを正規化してセット
             existingPost.setContent(normalizeContent(post.getContent()));
 
             postRepository.save(existingPost);
+            eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.POST_UPDATED, existingPost.getId()));
         }
 
         return "redirect:/";
@@ -181,15 +225,14 @@ public class PostController {
 
     /**
      * 削除処理 (★ 安全なコードに修正済み)
+     * 投稿者本人かどうかの確認と削除を1文で行い、いいね・コメントは DB の ON DELETE CASCADE で削除する
+     * (投稿・いいね・コメントのエンティティは読み込まない)
      */
     @GetMapping("/delete/{id}")
-    public String deletePost(@PathVariable Long id) {
-        String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
-        Post post = postRepository.findById(id).orElse(null);
-
-        // (修正) post.getUser() != null のチェックを追加
-        if (post != null && post.getUser() != null && post.getUser().getUsername().equals(currentUsername)) {
-            postRepository.deleteById(id);
+    @SqlStatementBudget(1)
+    public String deletePost(@PathVariable Long id, @AuthenticationPrincipal ForumUserDetails currentUser) {
+        if (postRepository.deleteByIdAndUserId(id, currentUser.getId()) > 0) {
+            eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.POST_DELETED, id));
         }
 
         return "redirect:/";
@@ -203,35 +246,39 @@ public class PostController {
      * 新しいコメントを保存する処理
      * (既存のまま)
      */
+    @SqlStatementBudget(4) // 投稿の取得・ID の確保 (シーケンス。50件に1回)・コメントの INSERT・コメント数の更新
     @PostMapping("/comments/create")
+    @Transactional
     public String createComment(@ModelAttribute Comment comment,
                                 @RequestParam("postId") Long postId,
+                                @AuthenticationPrincipal ForumUserDetails currentUser,
                                 RedirectAttributes redirectAttributes) {
 
-        // 1. ログイン中のユーザーを取得
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username)
-                .orElse(null);
+        // 1. ログイン中のユーザー (プリンシパル) は引数で受け取る
 
         // 2. コメント対象の投稿を取得
         Post post = postRepository.findById(postId)
                 .orElse(null);
 
-        // 3. ユーザーまたは投稿が見つからない場合はエラー
-        if (currentUser == null || post == null) {
+        // 3. 投稿が見つからない場合はエラー
+        if (post == null) {
             // redirectAttributes.addFlashAttribute("errorMessage", "投稿またはユーザーが見つかりません。");
             return "redirect:/"; // トップにリダイレクト
         }
 
         // 4. Comment オブジェクトに必要な情報をセット
-        comment.setUser(currentUser);
+        //    (ユーザーは SELECT せずに参照だけ作る。削除済みなら外部キー違反 -> handleDataIntegrityViolation)
+        comment.setUser(userRepository.getReferenceById(currentUser.getId()));
         comment.setPost(post);
         // ★ コメントの改行コードも正規化
         comment.setContent(normalizeContent(comment.getContent()));
         // createdAt は @PrePersist で自動セットされる
 
-        // 5. データベースに保存
-        commentRepository.save(comment);
+        // 5. データベースに保存 (投稿のコメント数カウンターも同じトランザクションで +1)
+        //    INSERT はコミットまで遅らせず、カウンターの UPDATE より先に実行する (外部キー違反ならここで止まる)
+        commentRepository.saveAndFlush(comment);
+        postRepository.adjustCommentCount(post.getId(), 1);
+        eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.COMMENTS_CHANGED, post.getId()));
 
         // 6. コメント投稿後は元の投稿一覧（または詳細ページ）にリダイレクト
         return "redirect:/";
@@ -241,24 +288,24 @@ public class PostController {
      * コメント編集フォームを表示
      * (既存のまま)
      */
+    @SqlStatementBudget(1)
     @GetMapping("/comments/edit/{id}")
-    public String showCommentEditForm(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
+    public String showCommentEditForm(@PathVariable Long id, Model model,
+                                      @AuthenticationPrincipal ForumUserDetails currentUser,
+                                      RedirectAttributes redirectAttributes) {
 
         // 1. コメントを取得
         Comment comment = commentRepository.findById(id)
                 .orElse(null);
 
-        // 2. ログイン中のユーザー名を取得
-        String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        // 3. セキュリティチェック
+        // 2. セキュリティチェック (ユーザーIDで比較する)
         // コメントが存在しない、または投稿者本人でない場合はリダイレクト
-        if (comment == null || comment.getUser() == null || !comment.getUser().getUsername().equals(currentUsername)) {
+        if (comment == null || !currentUser.isOwnerOf(comment.getUser())) {
             // redirectAttributes.addFlashAttribute("errorMessage", "編集権限がありません。");
             return "redirect:/";
         }
 
-        // 4. フォームにコメントオブジェクトを渡す
+        // 3. フォームにコメントオブジェクトを渡す
         model.addAttribute("comment", comment);
         return "comment_edit"; // comment_edit.html を表示
     }
@@ -267,29 +314,31 @@ public class PostController {
      * コメント更新処理
      * (既存のまま)
      */
+    @SqlStatementBudget(2) // コメントの取得・UPDATE
     @PostMapping("/comments/update")
-    public String updateComment(@ModelAttribute Comment comment, RedirectAttributes redirectAttributes) {
+    @Transactional
+    public String updateComment(@ModelAttribute Comment comment,
+                                @AuthenticationPrincipal ForumUserDetails currentUser,
+                                RedirectAttributes redirectAttributes) {
 
         // 1. 更新対象のコメントをDBから取得
         Comment existingComment = commentRepository.findById(comment.getId())
                 .orElse(null);
 
-        // 2. ログイン中のユーザー名を取得
-        String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        // 3. セキュリティチェック (コメントが存在し、かつ投稿者本人であること)
-        if (existingComment == null || existingComment.getUser() == null || !existingComment.getUser().getUsername().equals(currentUsername)) {
+        // 2. セキュリティチェック (コメントが存在し、かつ投稿者本人であること)
+        if (existingComment == null || !currentUser.isOwnerOf(existingComment.getUser())) {
             // redirectAttributes.addFlashAttribute("errorMessage", "更新権限がありません。");
             return "redirect:/";
         }
 
-        // 4. 内容を更新（改行コードも正規化）
+        // 3. 内容を更新（改行コードも正規化）
         existingComment.setContent(normalizeContent(comment.getContent()));
 
-        // 5. データベースに保存
+        // 4. データベースに保存
         commentRepository.save(existingComment);
+        eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.COMMENTS_CHANGED, existingComment.getPost().getId()));
 
-        // 6. 投稿一覧に戻る
+        // 5. 投稿一覧に戻る
         return "redirect:/";
     }
 
@@ -298,26 +347,46 @@ public class PostController {
      * (既存のまま)
      */
     @GetMapping("/comments/delete/{id}")
-    public String deleteComment(@PathVariable Long id, RedirectAttributes redirectAttributes) {
-
-        // 1. 削除対象のコメントをDBから取得
-        Comment comment = commentRepository.findById(id)
-                .orElse(null);
-
-        // 2. ログイン中のユーザー名を取得
-        String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
+    @Transactional
+    @SqlStatementBudget(3) // 投稿IDの取得・DELETE・コメント数の更新
+    public String deleteComment(@PathVariable Long id,
+                                @AuthenticationPrincipal ForumUserDetails currentUser,
+                                RedirectAttributes redirectAttributes) {
 
-        // 3. セキュリティチェック (コメントが存在し、かつ投稿者本人であること)
-        if (comment == null || comment.getUser() == null || !comment.getUser().getUsername().equals(currentUsername)) {
+        // 1. セキュリティチェック (コメントが存在し、かつ投稿者本人であること)
+        //    コメントのエンティティは読み込まず、投稿IDだけを取得する
+        Long postId = commentRepository.findPostIdByIdAndUserId(id, currentUser.getId()).orElse(null);
+        if (postId == null) {
             // redirectAttributes.addFlashAttribute("errorMessage", "削除権限がありません。");
             return "redirect:/";
         }
 
-        // 4. データベースから削除
-        commentRepository.delete(comment);
+        // 2. 本人確認つきで1文で削除 (投稿のコメント数カウンターも同じトランザクションで -1)
+        //    (同時に削除されていた場合は 0 件なので、カウンターは減らさない)
+        if (commentRepository.deleteByIdAndUserId(id, currentUser.getId()) > 0) {
+            postRepository.adjustCommentCount(postId, -1);
+            eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.COMMENTS_CHANGED, postId));
+        }
 
-        // 5. 投稿一覧に戻る
+        // 3. 投稿一覧に戻る
         return "redirect:/";
     }
     // ▲▲▲ 【コメント機能 ここまで】 ▲▲▲
+
+    /**
+     * 投稿・コメント保存時の外部キー違反
+     * プリンシパルのユーザーが削除済み (セッションだけ残っている場合) なら、
+     * ログアウトさせてセッションをクリアし、ログインページに戻す
+     * (ユーザーの存在確認は、この失敗時にだけ行う)
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public String handleDataIntegrityViolation(HttpServletRequest request, HttpServletResponse response) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof ForumUserDetails currentUser
+                && !userRepository.existsById(currentUser.getId())) {
+            new SecurityContextLogoutHandler().logout(request, response, auth);
+            return "redirect:/login?logout";
+        }
+        return "redirect:/";
+    }
 }
\ No newline at end of file
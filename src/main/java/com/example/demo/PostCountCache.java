@@ -0,0 +1,87 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 投稿総数 (ページ番号表示用) の概算キャッシュ
+ *
+ * ページを開くたびに posts 全体を count(*) しないよう、一定時間 (TTL) だけ値を保持する。
+ * 投稿の作成・削除時は FeedChangeEvent を受けて差分だけ反映するので、TTL内でも大きくはずれない。
+ */
+@Component
+public class PostCountCache {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    // 総数を再取得するまでの間隔 (デフォルト60秒)
+    @Value("${forum.feed.count-cache-ttl:60s}")
+    private Duration ttl;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long cachedCount = -1;
+    private volatile long expiresAt;
+
+    /**
+     * 概算の投稿総数を返す (期限切れの場合のみ DB で数え直す)
+     */
+    public long getApproximateCount() {
+        long now = System.currentTimeMillis();
+        if (cachedCount < 0 || now >= expiresAt) {
+            // synchronized の中で DB を待つと、仮想スレッドがキャリアスレッドを占有したままになるので ReentrantLock を使う
+            lock.lock();
+            try {
+                if (cachedCount < 0 || now >= expiresAt) {
+                    cachedCount = postRepository.count();
+                    expiresAt = now + ttl.toMillis();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return cachedCount;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeedChange(FeedChangeEvent event) {
+        switch (event.type()) {
+            case POST_CREATED -> adjust(1);
+            case POST_DELETED -> adjust(-1);
+            case ALL -> expire();
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 投稿の作成 (+1) / 削除 (-1) をキャッシュ済みの値に反映する
+     */
+    public void adjust(long delta) {
+        lock.lock();
+        try {
+            if (cachedCount >= 0) {
+                cachedCount = Math.max(0, cachedCount + delta);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 次の getApproximateCount() で数え直させる
+     */
+    public void expire() {
+        lock.lock();
+        try {
+            expiresAt = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
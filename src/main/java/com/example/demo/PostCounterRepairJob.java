@@ -0,0 +1,55 @@
+package com.example.demo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * posts.like_count / posts.comment_count の修復ジョブ
+ *
+ * カウンターは通常、いいね・コメントの作成/削除と同じトランザクションで増減されるが、
+ * 手作業でのデータ修正やカラム追加直後 (既存行はすべて 0) などでずれることがあるため、
+ * 定期実行 (デフォルトは毎日 4:30) で likes / comments から数え直す。
+ * 数え直しは posts の全行を likes / comments と突き合わせる重い処理なので、起動時には実行しない
+ * (カラム追加直後など、すぐに直したいときだけ forum.counters.repair-on-startup=true にする)。
+ */
+@Component
+public class PostCounterRepairJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PostCounterRepairJob.class);
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 起動時にも修復を実行するか (デフォルトは定期実行のみ)
+    @Value("${forum.counters.repair-on-startup:false}")
+    private boolean repairOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        if (repairOnStartup) {
+            repair();
+        }
+    }
+
+    @Scheduled(cron = "${forum.counters.repair-cron:0 30 4 * * *}")
+    public void repair() {
+        int repaired = postRepository.repairCounters();
+        if (repaired > 0) {
+            log.warn("いいね数/コメント数カウンターのずれを修復しました: {} 件", repaired);
+            // どの投稿が直ったかは分からないので、一覧のキャッシュはすべて捨てる
+            eventPublisher.publishEvent(FeedChangeEvent.all());
+        } else {
+            log.info("いいね数/コメント数カウンターにずれはありませんでした");
+        }
+    }
+}
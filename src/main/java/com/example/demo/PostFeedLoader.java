@@ -0,0 +1,100 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 投稿一覧の読み込み (読み取り専用のリードモデル)
+ *
+ * 一覧画面は PostCard / CommentPreview (record の DTO) だけで描画する。
+ * - エンティティを読み込まないので、Thymeleaf の描画中に遅延読み込み (N+1) が起きない
+ * - readOnly トランザクションなので、Hibernate のダーティチェック (flush) も行われない
+ *
+ * 投稿とコメントを1つのクエリで JOIN FETCH すると、いいね数 × コメント数 の行が返ってくるため、
+ * 関連ごとに「IN (:ids)」のクエリを分けて発行し、Java側で組み合わせる。
+ * - 投稿 + 投稿者名 (1クエリ)
+ * - 投稿ごとに新しい N 件のコメント + コメント投稿者名 (1クエリ)
+ * いいね数・コメント数は posts のカウンター列を使う。
+ */
+@Component
+@Transactional(readOnly = true)
+public class PostFeedLoader {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    // 一覧に表示するコメントの件数 (投稿ごと、新しい順)。それより古いものは API で読み込む
+    @Value("${forum.feed.inline-comments:3}")
+    private int inlineComments;
+
+    /**
+     * 投稿一覧の1ページを読み込む
+     * @param cursor キーセットページネーション用カーソル (null ならページ番号で取得)
+     * @param page ページ番号 (cursor が null のときだけ使う)
+     * @param size 1ページあたりの件数
+     */
+    public FeedPage loadPage(FeedCursor cursor, int page, int size) {
+        // 1. ★ N+1対策: まずIDのリストだけを取得 (1件多く取得して「次ページがあるか」を判定する)
+        //    count(*) は発行しない
+        List<Long> postIds;
+        if (cursor != null) {
+            // キーセットモード: カーソルより古い投稿を OFFSET なしで取得
+            postIds = postRepository.findPostIdsBefore(cursor.createdAt(), cursor.id(), PageRequest.of(0, size + 1));
+        } else {
+            // ページ番号モード: 先頭ページ (page=0) は OFFSET 0 なので実質キーセットと同じコスト
+            postIds = postRepository.findLatestPostIds(page * size, size + 1);
+        }
+        boolean hasNext = postIds.size() > size;
+        if (hasNext) {
+            postIds = postIds.subList(0, size);
+        }
+        return new FeedPage(load(postIds), hasNext);
+    }
+
+    /**
+     * @param orderedPostIds 表示順に並んだ投稿ID
+     * @return postIds と同じ順の一覧 (存在しなかった投稿は除く)
+     */
+    public List<PostCard> load(List<Long> orderedPostIds) {
+        if (orderedPostIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 2. 投稿 + 投稿者名
+        Map<Long, PostCard> cardsById = new HashMap<>();
+        for (PostCard card : postRepository.findPostCardsByIdIn(orderedPostIds)) {
+            cardsById.put(card.id(), card);
+        }
+
+        // 3. 投稿ごとの新しい N 件のコメント + コメント投稿者名 (古い順で返ってくる)
+        Map<Long, List<CommentPreview>> commentsByPostId = new HashMap<>();
+        if (inlineComments > 0) {
+            for (CommentPreview comment : commentRepository.findRecentCommentPreviews(orderedPostIds, inlineComments)) {
+                commentsByPostId.computeIfAbsent(comment.postId(), id -> new ArrayList<>()).add(comment);
+            }
+        }
+
+        // 4. ID の順 (createdAt の降順) に組み立てる
+        //    (HashMap で引くので、以前の postIds.indexOf による O(n²) の並び替えは不要)
+        List<PostCard> cards = new ArrayList<>(orderedPostIds.size());
+        for (Long postId : orderedPostIds) {
+            PostCard card = cardsById.get(postId);
+            if (card != null) {
+                cards.add(card.withComments(commentsByPostId.getOrDefault(postId, Collections.emptyList())));
+            }
+        }
+        return cards;
+    }
+}
@@ -1,40 +1,86 @@
 package com.example.demo;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface PostRepository extends JpaRepository<Post, Long> {
+public interface PostRepository extends JpaRepository<Post, Long>, PostRepositoryCustom {
 
     /**
-     * 1. まず、ページング指定で「投稿のID」だけを取得する
-     * (作成日の降順)
+     * 1-a. ページ番号指定で「投稿のID」だけを取得する (作成日の降順)
+     * Page ではなく List を返すため count(*) クエリは発行されない
+     * (総数は PostCountCache の概算値を使う)
      */
-    @Query("SELECT p.id FROM Post p ORDER BY p.createdAt DESC")
-    Page<Long> findPostIdsByOrderByCreatedAtDesc(Pageable pageable);
+    @Query("SELECT p.id FROM Post p ORDER BY p.createdAt DESC, p.id DESC LIMIT :limit OFFSET :offset")
+    List<Long> findLatestPostIds(@Param("offset") int offset, @Param("limit") int limit);
 
     /**
-     * 2. 取得したIDのリストに基づき、「いいね！」「ユーザー」【コメント】の情報を
-     * JOIN FETCH（一括取得）でまとめて取得する
+     * 1-b. キーセット (カーソル) ページネーション:
+     * 指定した (createdAt, id) より古い投稿のIDを取得する
+     * OFFSET を使わず (created_at DESC, id DESC) のインデックスをたどるので、深いページでも遅くならない
      */
-    // ▼▼▼ このクエリを修正 ▼▼▼
-    @Query("SELECT DISTINCT p FROM Post p " +      // ★ DISTINCT を追加
-            "LEFT JOIN FETCH p.user " +          // 投稿者(User)の情報を一括取得
-            "LEFT JOIN FETCH p.likes " +         // いいね(Likes)の情報を一括取得
-            "LEFT JOIN FETCH p.comments " +      // ★ コメント(Comments)の情報を一括取得
-            "WHERE p.id IN :ids " +              // 1. で取得したIDリストに絞り込む
-            "ORDER BY p.createdAt DESC")         // 順序を保持
-    List<Post> findAllPostsWithUserAndLikes(@Param("ids") List<Long> ids);
-    // ▲▲▲ 修正ここまで ▲▲▲
+    @Query("SELECT p.id FROM Post p " +
+            "WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Long> findPostIdsBefore(@Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable pageable);
 
     /**
-     * (ページネーション機能で追加した、古いメソッド。PostControllerからは使われなくなる)
+     * 2. 取得したIDのリストに基づき、一覧表示用の PostCard (読み取り専用の DTO) を取得する
+     * 投稿者名は JOIN で取得し、エンティティは読み込まない (遅延読み込みも発生しない)
+     * (以前は Likes と Comments も同じクエリで JOIN FETCH していたが、
+     *  いいね数 × コメント数 の直積の行が返ってしまうため、コメントは別クエリにした)
      */
-    Page<Post> findAllByOrderByCreatedAtDesc(Pageable pageable);
+    // 本文は content_html が未作成 (バックフィル前) の行だけ取得する (通常は NULL なので転送量が増えない)
+    @Query("SELECT new com.example.demo.PostCard(p.id, p.title, " +
+            "CASE WHEN p.contentHtml IS NULL THEN p.content END, p.contentHtml, " +
+            "u.username, p.createdAt, p.createdAtDisplay, p.likeCount, p.commentCount) " +
+            "FROM Post p LEFT JOIN p.user u " +
+            "WHERE p.id IN :ids")                // 1. で取得したIDリストに絞り込む
+    List<PostCard> findPostCardsByIdIn(@Param("ids") List<Long> ids);
+
+    /**
+     * 指定した投稿のいいね数・コメント数をまとめて取得する (PostStatsCache で使用)
+     * カウンター列を読むだけなので、likes / comments を数える必要はない
+     */
+    @Query("SELECT new com.example.demo.PostStats(p.id, p.likeCount, p.commentCount) FROM Post p WHERE p.id IN :ids")
+    List<PostStats> findStatsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // --- いいね数・コメント数カウンター (posts.like_count / posts.comment_count) ---
+    // いいね数は LikeRepository.toggleLike が切り替えと同じ文で、コメント数は PostRepositoryCustom.adjustCommentCount で増減する
+
+    /**
+     * 投稿を1文で削除する (投稿者本人の場合だけ)
+     * いいね・コメントはエンティティとして読み込まず、DB の ON DELETE CASCADE で削除される
+     * @return 削除した件数 (0 なら投稿が存在しないか、本人の投稿ではない)
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Post p WHERE p.id = :id AND p.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * カウンターの修復: likes / comments を数え直し、ずれている投稿だけを更新する
+     * (PostCounterRepairJob から定期的に実行される)
+     * @return 修復した投稿の件数
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE posts SET " +
+            "like_count = (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id), " +
+            "comment_count = (SELECT COUNT(*) FROM comments c WHERE c.post_id = posts.id) " +
+            "WHERE like_count <> (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id) " +
+            "OR comment_count <> (SELECT COUNT(*) FROM comments c WHERE c.post_id = posts.id)",
+            nativeQuery = true)
+    int repairCounters();
 }
\ No newline at end of file
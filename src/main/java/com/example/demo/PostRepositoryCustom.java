@@ -0,0 +1,15 @@
+package com.example.demo;
+
+/**
+ * PostRepository に追加する独自メソッド (実装は PostRepositoryImpl)
+ */
+public interface PostRepositoryCustom {
+
+    /**
+     * コメント数を原子的に増減する (UPDATE posts SET comment_count = comment_count + ?)
+     * 二次キャッシュの Post は消さないので、呼び出し側で FeedChangeEvent (COMMENTS_CHANGED) を送ること
+     * (コミット後に EntityCacheEvictor がその投稿だけを消す)
+     * @return 更新した件数 (0 なら投稿が存在しない)
+     */
+    int adjustCommentCount(Long id, int delta);
+}
@@ -0,0 +1,24 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * PostRepositoryCustom の実装 (Spring Data が "Impl" という名前で自動的に組み込む)
+ *
+ * コメント数の更新は JPQL の一括 UPDATE (UPDATE Post p SET ...) だと、Hibernate が posts の二次キャッシュの
+ * リージョン全体を消してしまう (コメントの作成・削除のたびに、ほかの投稿のキャッシュもすべて失われる)。
+ * LikeRepositoryImpl と同じく JdbcTemplate で更新し、その投稿だけを EntityCacheEvictor に消させる。
+ */
+public class PostRepositoryImpl implements PostRepositoryCustom {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public int adjustCommentCount(Long id, int delta) {
+        return jdbcTemplate.update("UPDATE posts SET comment_count = comment_count + ? WHERE id = ?", delta, id);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo;
+
+/**
+ * 投稿のいいね数・コメント数 (GET /api/posts/stats 用。ユーザーに依存しない部分)
+ * @param id 投稿ID
+ * @param likeCount いいね！数 (posts.like_count)
+ * @param commentCount コメント数 (posts.comment_count)
+ */
+public record PostStats(Long id, int likeCount, int commentCount) {
+
+    public PostStats withLikeCount(int likeCount) {
+        return new PostStats(id, likeCount, commentCount);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 投稿ごとのいいね数・コメント数 (PostStats) のキャッシュ (GET /api/posts/stats 用)
+ *
+ * キーは投稿IDなので、どのページから問い合わせても同じエントリを使う。
+ * キャッシュにない投稿だけを1本の IN (:ids) のクエリでまとめて読み込む。
+ *
+ * 書き込み時は FeedCache と同じく FeedChangeEvent (コミット後に届く) を受けて更新する。
+ * - いいね数・コメントの変更、write-behind バッファの書き込み、投稿の削除: その投稿を捨てる
+ *   (いいね数のイベントは切り替えのコミット順に届くとは限らないので、イベントの値では書き換えず読み直させる)
+ * - ALL: すべて捨てる
+ */
+@Component
+public class PostStatsCache {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // いいね！の write-behind モードのときだけ存在する (未書き込みのいいね数を足すため)
+    @Autowired(required = false)
+    private LikeWriteBehindBuffer likeWriteBehindBuffer;
+
+    // 保持する投稿数の上限 (超えると使われていないものから捨てる)
+    @Value("${forum.post-stats.cache.max-size:10000}")
+    private long maxSize;
+
+    // 書き込みイベントを取りこぼした場合の保険として、この時間が経ったら読み直す
+    @Value("${forum.post-stats.cache.ttl:10m}")
+    private Duration ttl;
+
+    private Cache<Long, PostStats> cache;
+
+    // キャッシュへの追加と無効化を直列にするロック (読み取り (ヒット) はロックしない)
+    private final Object writeLock = new Object();
+    // 無効化のたびに増える。読み込み中に無効化があったら、その結果はキャッシュしない
+    private long version;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "forum.post-stats");
+    }
+
+    /**
+     * 指定した投稿のいいね数・コメント数を返す (存在しない投稿は結果に含まれない)
+     */
+    public Map<Long, PostStats> getStats(Collection<Long> postIds) {
+        Map<Long, PostStats> result = new HashMap<>(cache.getAllPresent(postIds));
+        List<Long> missing = new ArrayList<>();
+        for (Long postId : postIds) {
+            if (!result.containsKey(postId)) {
+                missing.add(postId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long loadVersion;
+        synchronized (writeLock) {
+            loadVersion = version;
+        }
+        List<PostStats> loaded = new ArrayList<>();
+        for (PostStats stats : postRepository.findStatsByIdIn(missing)) {
+            if (likeWriteBehindBuffer != null) {
+                int likeCount = stats.likeCount() + likeWriteBehindBuffer.pendingLikeDelta(stats.id());
+                stats = stats.withLikeCount(Math.max(likeCount, 0));
+            }
+            loaded.add(stats);
+            result.put(stats.id(), stats);
+        }
+        synchronized (writeLock) {
+            // 読み込み中に書き込みがあった場合は、古い内容かもしれないのでキャッシュしない
+            if (loadVersion == version) {
+                for (PostStats stats : loaded) {
+                    cache.put(stats.id(), stats);
+                }
+            }
+        }
+        return result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeedChange(FeedChangeEvent event) {
+        synchronized (writeLock) {
+            version++;
+            switch (event.type()) {
+                // 新しい投稿はまだキャッシュになく、タイトル・本文の更新は件数に影響しない
+                case POST_CREATED, POST_UPDATED -> {
+                }
+                case LIKE_COUNT_CHANGED, LIKES_WRITTEN, COMMENTS_CHANGED, POST_DELETED -> cache.invalidate(event.postId());
+                case ALL -> cache.invalidateAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 表示中の投稿のいいね数・コメント数の JSON API
+ * 一覧のページ全体を読み直さずに、数だけをまとめて更新するために使う (list.html)
+ */
+@Timed("forum.controller") // ハンドラーごとの処理時間 (タグ class, method)
+@RestController
+@RequestMapping("/api/posts")
+public class PostStatsController {
+
+    // 1回に問い合わせできる投稿数の上限
+    private static final int MAX_IDS = 50;
+
+    @Autowired
+    private PostStatsCache postStatsCache;
+
+    @Autowired
+    private LikeRepository likeRepository;
+
+    @Autowired
+    private ForumContentVersion forumContentVersion;
+
+    // いいね！の write-behind モードのときだけ存在する (未書き込みの切り替えを反映するため)
+    @Autowired(required = false)
+    private LikeWriteBehindBuffer likeWriteBehindBuffer;
+
+    /**
+     * 指定した投稿のいいね数・コメント数と、ログイン中のユーザーがいいね！しているかを返す
+     * @param ids 投稿IDのリスト (カンマ区切り、最大 50 件)
+     * @return posts: 指定した順の投稿ごとの数 (存在しない投稿は含まない)
+     */
+    // いいね数・コメント数 (キャッシュに当たれば0文)・いいね済みの投稿ID (ログイン中のみ)
+    @SqlStatementBudget(2)
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats(@RequestParam("ids") List<Long> ids,
+                                   @AuthenticationPrincipal ForumUserDetails currentUser,
+                                   WebRequest webRequest,
+                                   HttpServletResponse response) {
+        Set<Long> postIds = new LinkedHashSet<>(ids);
+        postIds.remove(null);
+        if (postIds.isEmpty() || postIds.size() > MAX_IDS) {
+            return ResponseEntity.badRequest().body(Map.of("error", "ids は 1〜" + MAX_IDS + " 件で指定してください。"));
+        }
+
+        // 1. 未ログインなら全員に同じ内容なので、一覧 (GET /) と同じく前回から何も書き込まれていなければ 304
+        if (currentUser == null) {
+            if (webRequest.checkNotModified(forumContentVersion.etag())) {
+                return null;
+            }
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        }
+
+        // 2. 数は投稿ごとにキャッシュしたものを使う (ユーザーに依存しない)
+        Map<Long, PostStats> stats = postStatsCache.getStats(postIds);
+
+        // 3. いいね済みかどうかはユーザーごとなので、キャッシュせずに1文で調べる
+        Set<Long> likedPostIds = Collections.emptySet();
+        if (currentUser != null && !stats.isEmpty()) {
+            likedPostIds = likeRepository.findLikedPostIdsByUserIdAndPostIdIn(currentUser.getId(), stats.keySet());
+            if (likeWriteBehindBuffer != null) {
+                likedPostIds = likeWriteBehindBuffer.applyPending(currentUser.getId(), likedPostIds);
+            }
+        }
+
+        List<Map<String, Object>> body = new ArrayList<>();
+        for (Long postId : postIds) {
+            PostStats postStats = stats.get(postId);
+            if (postStats == null) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", postId);
+            item.put("likeCount", postStats.likeCount());
+            item.put("commentCount", postStats.commentCount());
+            item.put("liked", likedPostIds.contains(postId));
+            body.add(item);
+        }
+        return ResponseEntity.ok(Map.of("posts", body));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同時に処理するリクエスト数の上限 (仮想スレッドモード用)
+ *
+ * プラットフォームスレッドでは Tomcat のスレッド数 (server.tomcat.threads.max) が同時処理数の上限になるが、
+ * 仮想スレッド (spring.threads.virtual.enabled=true) ではリクエストごとにスレッドが作られ上限がなくなる。
+ * そのままだと DB 接続の空きを待つスレッドが際限なく積み上がり、HikariCP の connection-timeout で一斉に失敗するので、
+ * 同時処理数を DB の接続プールの大きさ (spring.datasource.hikari.maximum-pool-size) に合わせて制限する。
+ *
+ * 1. 空きがなければ forum.concurrency.limit.acquire-timeout まで待つ
+ * 2. 待っているリクエストが forum.concurrency.limit.max-waiting を超えたら、待たずに 503 (Retry-After) を返す
+ * ログイン (UserDetailsServiceImpl) も DB を使うので、Spring Security より前で制限する。
+ * 静的ファイル・actuator・ライブ更新 (SSE) は DB を使わないので対象外。
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 10)
+public class RequestConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // デフォルトでは仮想スレッドモードのときだけ有効 (プラットフォームスレッドでは Tomcat のスレッド数で足りる)
+    @Value("${forum.concurrency.limit.enabled:${spring.threads.virtual.enabled:false}}")
+    private boolean enabled;
+
+    // 同時に処理するリクエスト数 (デフォルトは接続プールの大きさ)
+    @Value("${forum.concurrency.limit.max-in-flight:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxInFlight;
+
+    // 空きを待てるリクエスト数 (これを超えたら待たずに 503)
+    @Value("${forum.concurrency.limit.max-waiting:200}")
+    private int maxWaiting;
+
+    // 空きを待つ最大時間
+    @Value("${forum.concurrency.limit.acquire-timeout:2s}")
+    private Duration acquireTimeout;
+
+    private Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxInFlight, true);
+        Gauge.builder("forum.http.concurrency.in-flight", this, f -> f.maxInFlight - f.permits.availablePermits())
+                .description("処理中のリクエスト数 (同時処理数の上限の対象のみ)")
+                .register(meterRegistry);
+        Gauge.builder("forum.http.concurrency.waiting", waiting, AtomicInteger::get)
+                .description("同時処理数の空きを待っているリクエスト数")
+                .register(meterRegistry);
+        rejected = Counter.builder("forum.http.concurrency.rejected")
+                .description("同時処理数の上限で 503 にしたリクエスト数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith("/css/") || path.startsWith("/js/") || path.startsWith("/actuator/")
+                || path.equals("/api/feed/events") || path.equals("/favicon.ico");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+}
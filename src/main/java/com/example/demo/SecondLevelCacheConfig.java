@@ -0,0 +1,80 @@
+package com.example.demo;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate の二次キャッシュ (エンティティのキャッシュ)
+ *
+ * User / Post のエンティティと、ユーザー名 → ユーザー ID (natural-id) を、リージョンごとに
+ * 最大件数と有効期間 (書き込みからの時間) を決めた Caffeine のキャッシュ (JCache) に置く。
+ * - Hibernate を通した書き込み (save・JPQL の一括 UPDATE/DELETE) は Hibernate が自分でキャッシュを消す
+ *   (JPQL の一括 UPDATE/DELETE はそのエンティティのリージョン全体、ネイティブ SQL の @Modifying は全リージョンを消す)
+ * - JdbcTemplate での書き込みは Hibernate からは見えないので、EntityCacheEvictor が消す
+ * リージョンごとのヒット率は forum.cache.hit.ratio (ForumMetricsConfig) で見る
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    static final String USERS_REGION = "users";
+    static final String POSTS_REGION = "posts";
+    static final String USERS_BY_USERNAME_REGION = "users-by-username";
+
+    @Value("${forum.cache.users.max-size:10000}")
+    private long usersMaxSize;
+
+    @Value("${forum.cache.users.ttl:10m}")
+    private Duration usersTtl;
+
+    @Value("${forum.cache.users-by-username.max-size:10000}")
+    private long usersByUsernameMaxSize;
+
+    @Value("${forum.cache.users-by-username.ttl:10m}")
+    private Duration usersByUsernameTtl;
+
+    @Value("${forum.cache.posts.max-size:10000}")
+    private long postsMaxSize;
+
+    @Value("${forum.cache.posts.ttl:5m}")
+    private Duration postsTtl;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager() {
+        // アプリケーション (テストでは Spring のコンテキスト) ごとに別の CacheManager にする
+        // (同じ JVM でも、接続先の DB が違えばキャッシュの中身も違うため)
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("forum-entity-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+        createRegion(cacheManager, USERS_REGION, usersMaxSize, usersTtl);
+        createRegion(cacheManager, USERS_BY_USERNAME_REGION, usersByUsernameMaxSize, usersByUsernameTtl);
+        createRegion(cacheManager, POSTS_REGION, postsMaxSize, postsTtl);
+        return cacheManager;
+    }
+
+    /**
+     * Hibernate に上の CacheManager を使わせる
+     * (hibernate.javax.cache.missing_cache_strategy=fail なので、ここで作っていないリージョンがあれば起動時にエラーになる)
+     */
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheHibernateProperties(CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+
+    private static void createRegion(CacheManager cacheManager, String region, long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        cacheManager.createCache(region, configuration);
+    }
+}
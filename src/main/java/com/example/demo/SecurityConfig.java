@@ -1,27 +1,98 @@
 package com.example.demo;
 
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod; // ★ 1. HttpMethod をインポート
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.core.session.SessionRegistryImpl;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.session.HttpSessionEventPublisher;
 // import org.springframework.security.web.util.matcher.AntPathRequestMatcher; // ★ 不要になったため削除
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    /**
+     * Prometheus のメトリクス (/actuator/prometheus) 用の設定 (一般の画面・API より先に判定する)
+     * メトリクスには HQL・URL のパターン・接続プールやハッシュ計算の混み具合が含まれるので、公開しない。
+     * forum.metrics.username / forum.metrics.password の Basic 認証だけを受け付ける
+     * (掲示板のユーザーとは別。パスワードが未設定ならだれも取得できない)。
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain metricsSecurityFilterChain(HttpSecurity http,
+                                                          @Value("${forum.metrics.username:prometheus}") String username,
+                                                          @Value("${forum.metrics.password:}") String password) throws Exception {
+        http
+                // (Spring MVC がないコンテキスト (ベンチマークなど) でも作れるよう、MVC に依存しない PathPattern で判定する)
+                .securityMatcher(PathPatternRequestMatcher.withDefaults().matcher("/actuator/prometheus"))
+                .authorizeHttpRequests(authorize -> {
+                    if (password.isEmpty()) {
+                        authorize.anyRequest().denyAll();
+                    } else {
+                        authorize.anyRequest().hasRole("METRICS");
+                    }
+                })
+                .httpBasic(Customizer.withDefaults())
+                .authenticationManager(metricsAuthenticationManager(username, password))
+                // スクレイパーはクッキーを使わないので、セッションは作らない
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+        return http.build();
+    }
+
+    // メトリクス取得専用のユーザー (1人だけ。BoundedPasswordEncoder の待ち行列は使わない)
+    private static AuthenticationManager metricsAuthenticationManager(String username, String password) {
+        if (password.isEmpty()) {
+            return authentication -> {
+                throw new BadCredentialsException("forum.metrics.password が設定されていません");
+            };
+        }
+        UserDetails scraper = org.springframework.security.core.userdetails.User.withUsername(username)
+                .password("{noop}" + password)
+                .roles("METRICS")
+                .build();
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(new InMemoryUserDetailsManager(scraper));
+        provider.setPasswordEncoder(PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        return new ProviderManager(provider);
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .authorizeHttpRequests(authorize -> authorize
+                        // sendError (ログイン・登録の 503 など) のエラーページへの転送は全員に許可
+                        // (認証を求めるとログイン画面へのリダイレクト (302) に置き換わり、クライアントに 503 が届かない)
+                        .dispatcherTypeMatchers(DispatcherType.ERROR).permitAll()
                         // ★ 2. CSSとJSファイルへのアクセスを全員に許可 (GETリクエスト)
                         .requestMatchers(HttpMethod.GET, "/css/**", "/js/**").permitAll()
                         // ★ 3. 「いいね！」API (POSTリクエスト) へのアクセスを認証済みのユーザーに許可
                         .requestMatchers(HttpMethod.POST, "/api/posts/**").authenticated()
+                        // 「以前のコメントを表示」API といいね数・コメント数の API (GETリクエスト) は一覧と同じく全員に許可
+                        .requestMatchers(HttpMethod.GET, "/api/posts/*/comments", "/api/posts/stats").permitAll()
+                        // 一覧のライブ更新 (SSE) も一覧と同じく全員に許可
+                        .requestMatchers(HttpMethod.GET, "/api/feed/events").permitAll()
+                        // ヘルスチェックは認証なし (Prometheus のメトリクスは metricsSecurityFilterChain)
+                        .requestMatchers(HttpMethod.GET, "/actuator/health").permitAll()
                         // 「/register」（新規登録）と「/login」（ログイン）、「/」（一覧）ページは全員アクセス許可
                         .requestMatchers("/", "/register", "/login").permitAll()
                         // その他のリクエストはすべて認証が必要
@@ -32,6 +103,8 @@ public class SecurityConfig {
                         .loginPage("/login")
                         // ログイン成功時のリダイレクト先
                         .defaultSuccessUrl("/", true)
+                        // パスワードのハッシュ計算が混み合っているときは、ログイン失敗ではなく 503 にする
+                        .failureHandler(loginFailureHandler())
                         .permitAll()
                 )
                 .logout(logout -> logout
@@ -40,15 +113,42 @@ public class SecurityConfig {
                         // ログアウト成功時のリダイレクト先
                         .logoutSuccessUrl("/login?logout")
                         .permitAll()
+                )
+                .sessionManagement(session -> session
+                        // ログイン中のセッションをユーザーごとに記録する (同時ログインの数は制限しない)
+                        // 退会時に AuthController がそのユーザーの他の端末のセッションも無効にし、
+                        // 無効にされたセッションの次のリクエストはログアウトさせて退会済みの表示に回す
+                        .maximumSessions(-1)
+                        .sessionRegistry(sessionRegistry())
+                        .expiredUrl("/login?deleted")
                 );
 
         return http.build();
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        // パスワードをハッシュ化するためのエンコーダー
-        return new BCryptPasswordEncoder();
+    public SessionRegistry sessionRegistry() {
+        return new SessionRegistryImpl();
+    }
+
+    // セッションの破棄 (タイムアウト・ログアウト) を SessionRegistry に伝え、記録を消させる
+    @Bean
+    public HttpSessionEventPublisher httpSessionEventPublisher() {
+        return new HttpSessionEventPublisher();
+    }
+
+    // パスワードをハッシュ化するためのエンコーダーは BoundedPasswordEncoder (@Component)
+
+    private AuthenticationFailureHandler loginFailureHandler() {
+        AuthenticationFailureHandler defaultHandler = new SimpleUrlAuthenticationFailureHandler("/login?error");
+        return (request, response, exception) -> {
+            if (exception instanceof PasswordHashingBusyException) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            } else {
+                defaultHandler.onAuthenticationFailure(request, response, exception);
+            }
+        };
     }
 }
 
@@ -0,0 +1,27 @@
+package com.example.demo;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * ハンドラーメソッド 1 リクエストあたりに実行してよい SQL 文の上限 (ビューの描画を含む)
+ *
+ * 上限を超えると SqlStatementBudgetInterceptor が警告ログを出す。
+ * forum.sql.budget.strict=true (テスト) では、上限を超えた SQL 文を実行しようとした時点で
+ * SqlStatementBudgetExceededException を投げて、そのリクエストを失敗させる
+ * (テンプレートの変更などで遅延読み込み (N+1) が戻ってきたことをリリース前に見つけるため)。
+ * JDBC バッチ (executeBatch) は 1 文として数える。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SqlStatementBudget {
+
+    /**
+     * SQL 文の最大数
+     */
+    int value();
+}
@@ -0,0 +1,12 @@
+package com.example.demo;
+
+/**
+ * 1 リクエストの SQL 文の数が @SqlStatementBudget の上限を超えたときの例外
+ * (forum.sql.budget.strict=true のときだけ投げられる)
+ */
+public class SqlStatementBudgetExceededException extends RuntimeException {
+
+    public SqlStatementBudgetExceededException(String endpoint, int budget, String sql) {
+        super(endpoint + " の SQL 文が上限 (" + budget + " 文) を超えました。N+1 になっていないか確認してください: " + sql);
+    }
+}
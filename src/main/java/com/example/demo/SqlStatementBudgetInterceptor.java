@@ -0,0 +1,108 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * リクエストごとに実行した SQL 文の数を数え、@SqlStatementBudget の上限と比べる
+ *
+ * 数はビューの描画 (テンプレートでの遅延読み込み) まで含めて数え、
+ * メトリクス forum.http.sql.statements (method, uri ごと) に記録する。
+ * 上限を超えたリクエストは警告ログに出す (strict モードでは SqlStatementCounter が例外で失敗させる)。
+ * forum.slow-request.threshold より時間のかかったリクエストは、実行した SQL 文 (実行時間付き) をログに出す。
+ */
+@Component
+public class SqlStatementBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementBudgetInterceptor.class);
+
+    // 実行した SQL 文の数 (テストから確認するため、リクエスト属性にも入れておく)
+    public static final String STATEMENT_COUNT_ATTRIBUTE = SqlStatementBudgetInterceptor.class.getName() + ".statementCount";
+
+    private static final String STARTED_ATTRIBUTE = SqlStatementBudgetInterceptor.class.getName() + ".started";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // true なら上限を超えた時点でリクエストを失敗させる (テスト用)
+    @Value("${forum.sql.budget.strict:false}")
+    private boolean strict;
+
+    // これより時間のかかったリクエストは、実行した SQL 文をログに出す
+    @Value("${forum.slow-request.threshold:1s}")
+    private Duration slowRequestThreshold;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            SqlStatementBudget budget = handlerMethod.getMethodAnnotation(SqlStatementBudget.class);
+            if (SqlStatementCounter.begin(endpoint(request), budget != null ? budget.value() : -1, strict)) {
+                request.setAttribute(STARTED_ATTRIBUTE, handlerMethod);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(request.getAttribute(STARTED_ATTRIBUTE) instanceof HandlerMethod handlerMethod)) {
+            return;
+        }
+        request.removeAttribute(STARTED_ATTRIBUTE);
+        SqlStatementCounter.RequestStatements statements = SqlStatementCounter.end();
+        int count = statements.count();
+        request.setAttribute(STATEMENT_COUNT_ATTRIBUTE, count);
+
+        DistributionSummary.builder("forum.http.sql.statements")
+                .description("1リクエストで実行した SQL 文の数")
+                .tag("method", request.getMethod())
+                .tag("uri", uri(request))
+                .register(meterRegistry)
+                .record(count);
+
+        SqlStatementBudget budget = handlerMethod.getMethodAnnotation(SqlStatementBudget.class);
+        if (budget != null && count > budget.value()) {
+            log.warn("{} の SQL 文が上限を超えました: {} 文 (上限 {} 文)", endpoint(request), count, budget.value());
+        } else {
+            log.debug("{}: SQL {} 文", endpoint(request), count);
+        }
+
+        if (statements.elapsedNanos() > slowRequestThreshold.toNanos()) {
+            log.warn("遅いリクエスト: {} {}ms, SQL {} 文\n  {}", endpoint(request),
+                    TimeUnit.NANOSECONDS.toMillis(statements.elapsedNanos()), count,
+                    statements.format("\n  "));
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 非同期処理に移ったリクエストは、このスレッドでの計測をここで打ち切る
+        if (request.getAttribute(STARTED_ATTRIBUTE) != null) {
+            request.removeAttribute(STARTED_ATTRIBUTE);
+            SqlStatementCounter.end();
+        }
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        return request.getMethod() + " " + uri(request);
+    }
+
+    // "/api/posts/{postId}/toggle-like" のようなパターン (IDごとにメトリクスが増えないようにする)
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : request.getRequestURI();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 現在のスレッドで処理中のリクエストが実行した SQL 文の数 (と、遅いリクエストのログ用に SQL 文そのもの)
+ *
+ * SqlStatementBudgetInterceptor がリクエストの開始時に begin し、完了時に end する。
+ * StatementCountingDataSource が SQL 文を実行するたびに onExecute / afterExecute を呼ぶ
+ * (リクエストの外 (定期ジョブなど) で実行された SQL 文は数えない)。
+ */
+final class SqlStatementCounter {
+
+    // 1リクエストで記録しておく SQL 文の最大数 (数えるのは全部)
+    private static final int MAX_RECORDED_STATEMENTS = 50;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    /**
+     * 実行した SQL 文1つ (文字列にするのはログに出すときだけ)
+     */
+    record ExecutedStatement(String sql, long elapsedNanos) {
+
+        @Override
+        public String toString() {
+            return String.format("%.1fms %s", elapsedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1), sql);
+        }
+    }
+
+    /**
+     * 1リクエスト分の結果
+     * @param count 実行した SQL 文の数
+     * @param elapsedNanos begin から end までの時間
+     * @param statements 実行した SQL 文 (実行時間付き。先頭から MAX_RECORDED_STATEMENTS 件まで)
+     */
+    record RequestStatements(int count, long elapsedNanos, List<ExecutedStatement> statements) {
+
+        static final RequestStatements EMPTY = new RequestStatements(0, 0, List.of());
+
+        /**
+         * ログ用に、SQL 文を1行ずつ (実行時間付きで) つなげる
+         */
+        String format(String delimiter) {
+            StringJoiner joiner = new StringJoiner(delimiter);
+            for (ExecutedStatement statement : statements) {
+                joiner.add(statement.toString());
+            }
+            return joiner.toString();
+        }
+    }
+
+    private static final class Scope {
+        private final String endpoint;
+        private final int budget; // -1 なら上限なし
+        private final boolean strict;
+        private final long startNanos = System.nanoTime();
+        private final List<ExecutedStatement> statements = new ArrayList<>();
+        private int count;
+
+        private Scope(String endpoint, int budget, boolean strict) {
+            this.endpoint = endpoint;
+            this.budget = budget;
+            this.strict = strict;
+        }
+    }
+
+    /**
+     * 数え始める (すでに数えている場合 (エラーページへのフォワードなど) は何もせず false を返す)
+     */
+    static boolean begin(String endpoint, int budget, boolean strict) {
+        if (CURRENT.get() != null) {
+            return false;
+        }
+        CURRENT.set(new Scope(endpoint, budget, strict));
+        return true;
+    }
+
+    /**
+     * 数え終わり、結果を返す
+     */
+    static RequestStatements end() {
+        Scope scope = CURRENT.get();
+        CURRENT.remove();
+        if (scope == null) {
+            return RequestStatements.EMPTY;
+        }
+        return new RequestStatements(scope.count, System.nanoTime() - scope.startNanos,
+                Collections.unmodifiableList(scope.statements));
+    }
+
+    /**
+     * SQL 文の実行前に呼ばれる
+     */
+    static void onExecute(String sql) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return;
+        }
+        scope.count++;
+        // strict モードでは上限を超える文を実行する前に失敗させる (スタックトレースに原因の呼び出し元が残る)
+        if (scope.strict && scope.budget >= 0 && scope.count > scope.budget) {
+            throw new SqlStatementBudgetExceededException(scope.endpoint, scope.budget, sql);
+        }
+    }
+
+    /**
+     * SQL 文の実行後 (失敗した場合も) に呼ばれる
+     * ほとんどのリクエストはログに出ないので、ここでは文字列を作らずに SQL と時間だけを記録する
+     */
+    static void afterExecute(String sql, long elapsedNanos) {
+        Scope scope = CURRENT.get();
+        if (scope == null || scope.statements.size() >= MAX_RECORDED_STATEMENTS) {
+            return;
+        }
+        scope.statements.add(new ExecutedStatement(sql, elapsedNanos));
+    }
+}
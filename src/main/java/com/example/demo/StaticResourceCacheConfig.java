@@ -0,0 +1,46 @@
+package com.example.demo;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * 静的ファイル (/css/**, /js/**) のキャッシュ用ヘッダー
+ *
+ * テンプレートの @{/css/style.css} は、内容のハッシュ付きの URL (/css/style-<MD5>.css) に書き換えられる
+ * (spring.web.resources.chain.strategy.content)。
+ * - ハッシュ付きの URL は内容が変わらないので、1年間・immutable でキャッシュさせる
+ * - ハッシュなしの URL (古い HTML など) は毎回 Last-Modified で確認させる (変わっていなければ 304)
+ * (どちらも付けないと、Spring Security が no-store を付けてキャッシュさせない)
+ */
+@Configuration
+public class StaticResourceCacheConfig implements WebMvcConfigurer {
+
+    // ContentVersionStrategy のファイル名 (name-<MD5 の16進 32 文字>.ext)
+    private static final Pattern VERSIONED_PATH = Pattern.compile("-[0-9a-f]{32}\\.[^/.]+$");
+
+    private static final String VERSIONED_CACHE_CONTROL =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue();
+
+    private static final String UNVERSIONED_CACHE_CONTROL = CacheControl.noCache().getHeaderValue();
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                boolean versioned = VERSIONED_PATH.matcher(request.getRequestURI()).find();
+                response.setHeader(HttpHeaders.CACHE_CONTROL, versioned ? VERSIONED_CACHE_CONTROL : UNVERSIONED_CACHE_CONTROL);
+                return true;
+            }
+        }).addPathPatterns("/css/**", "/js/**");
+    }
+}
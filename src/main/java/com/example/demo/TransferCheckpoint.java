@@ -0,0 +1,60 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * エクスポート/インポートの途中経過 (中断したところから再開するため)
+ * データファイルの隣に "<ファイル名>.<export|import>-checkpoint" として保存する
+ * @param table 処理中のテーブル (ForumDataTable の名前)
+ * @param lastKey エクスポート: 最後に書き出した行のキー ("id" / "user_id,post_id")。インポートでは使わない
+ * @param position エクスポート: 書き出し済みのバイト数 / インポート: 読み込み済みの行数
+ */
+record TransferCheckpoint(String table, String lastKey, long position) {
+
+    static Path pathFor(Path dataFile, String operation) {
+        return dataFile.resolveSibling(dataFile.getFileName() + "." + operation + "-checkpoint");
+    }
+
+    /**
+     * @return 保存されたチェックポイント (なければ null)
+     */
+    static TransferCheckpoint load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new TransferCheckpoint(properties.getProperty("table"), properties.getProperty("lastKey"),
+                Long.parseLong(properties.getProperty("position")));
+    }
+
+    /**
+     * 一時ファイルに書いてから置き換える (書き込み途中で落ちても、前のチェックポイントが壊れない)
+     */
+    void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("table", table);
+        if (lastKey != null) {
+            properties.setProperty("lastKey", lastKey);
+        }
+        properties.setProperty("position", String.valueOf(position));
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
@@ -1,19 +1,34 @@
 package com.example.demo;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 @Entity
 @Table(name = "users") // "user" はDBの予約語と衝突することがあるため "users" というテーブル名にします
+// 二次キャッシュ (SecondLevelCacheConfig)。ユーザー名 → ID も別のリージョンにキャッシュする
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.USERS_REGION)
+@NaturalIdCache(region = SecondLevelCacheConfig.USERS_BY_USERNAME_REGION)
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // ID はシーケンスから 50 個ずつまとめて確保する (IDENTITY だと INSERT ごとに ID を受け取る必要があり、バッチにできない)
+    // allocationSize は V3__pooled_id_sequences.sql の INCREMENT BY と合わせる
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
+    // ユーザー名は登録後に変わらない (UNIQUE)
+    @NaturalId
     private String username;
     private String password;
     private String role; // ユーザーの権限 (例: "USER", "ADMIN")
@@ -2,15 +2,14 @@ package com.example.demo;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
-
-import java.util.Collections;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
@@ -23,11 +22,21 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         // 2. DBから見つかったユーザー情報 (私たちの User) を、
         //    Spring Securityが理解できる UserDetails 形式に変換する
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                // ユーザーの権限 (Role) を設定
-                Collections.singletonList(new SimpleGrantedAuthority(user.getRole()))
-        );
+        //    (ユーザーIDと権限も保持しておき、以降のリクエストで DB から引き直さない)
+        return new ForumUserDetails(user);
+    }
+
+    /**
+     * ログイン成功時に、保存済みのハッシュのコストが現在のコスト (BoundedPasswordEncoder) より低ければ
+     * Spring Security がハッシュし直して呼び出す
+     * エンティティを更新するので、二次キャッシュ (SecondLevelCacheConfig) の User も同時に更新される
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findById(((ForumUserDetails) userDetails).getId())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        return new ForumUserDetails(user);
     }
-}
\ No newline at end of file
+}
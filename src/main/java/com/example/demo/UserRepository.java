@@ -1,13 +1,41 @@
 package com.example.demo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.util.Optional;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
-    // Spring Securityがログイン時に使う
-    // ユーザー名 (username) を元にユーザー情報を検索するためのメソッド
-    Optional<User> findByUsername(String username);
+    // ユーザー名での検索 (findByUsername) は UserRepositoryCustom (二次キャッシュを使う natural-id での読み込み)
+
+    // --- 退会 (アカウント削除) ---
+    // ユーザーの投稿・コメント・いいねは DB の ON DELETE CASCADE で削除する (エンティティは読み込まない)
+
+    /**
+     * 退会の前処理: このユーザーのいいね・コメントが付いている投稿のカウンターを、その分だけ減らす
+     * (ユーザーを削除すると、いいね・コメントの行は CASCADE で消えるが、他のユーザーの投稿のカウンター列はそのまま残るため)
+     * @return 更新した投稿の件数
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE posts SET " +
+            "like_count = like_count - (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id AND l.user_id = :userId), " +
+            "comment_count = comment_count - (SELECT COUNT(*) FROM comments c WHERE c.post_id = posts.id AND c.user_id = :userId) " +
+            "WHERE id IN (SELECT post_id FROM likes WHERE user_id = :userId) " +
+            "OR id IN (SELECT post_id FROM comments WHERE user_id = :userId)",
+            nativeQuery = true)
+    int releaseCountersOf(@Param("userId") Long userId);
+
+    /**
+     * ユーザーを1文で削除する (投稿・コメント・いいねは DB が CASCADE で削除する)
+     * @return 削除した件数
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id")
+    int deleteInBulkById(@Param("id") Long id);
 }
\ No newline at end of file
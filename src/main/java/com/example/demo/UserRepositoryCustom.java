@@ -0,0 +1,16 @@
+package com.example.demo;
+
+import java.util.Optional;
+
+/**
+ * UserRepository に追加する独自メソッド (実装は UserRepositoryImpl)
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * ユーザー名 (natural-id) でユーザーを検索する
+     * 二次キャッシュ (users-by-username → users リージョン) にあれば SQL を実行しない
+     * Spring Security がログイン時に使う
+     */
+    Optional<User> findByUsername(String username);
+}
@@ -0,0 +1,27 @@
+package com.example.demo;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * UserRepositoryCustom の実装 (Spring Data が "Impl" という名前で自動的に組み込む)
+ *
+ * Spring Data のメソッド名からのクエリ (findByUsername) は毎回 JPQL を実行し、二次キャッシュを使わないので、
+ * Hibernate の natural-id での読み込みにしている。
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // ログイン処理 (Spring Security のフィルター) から呼ばれるときは EntityManager が開いていないので、ここで開く
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByUsername(String username) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(username);
+    }
+}
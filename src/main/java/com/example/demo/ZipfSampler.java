@@ -0,0 +1,52 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf 分布 (順位 k の出現確率が 1 / k^exponent に比例) で 0 〜 n-1 の番号を選ぶ
+ * DatasetGenerator で「一部の投稿・ユーザーにいいね・コメントが集中する」データを作るために使う
+ *
+ * 累積分布を配列に持ち、二分探索で選ぶ (n = 100万で約 8MB)。
+ * 順位と番号の対応はシードで固定したランダムな並びにするので、人気の投稿が古い順に偏ることはない。
+ */
+final class ZipfSampler {
+
+    private final double[] cumulative;
+    private final int[] rankToIndex;
+
+    ZipfSampler(int n, double exponent, Random random) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+
+        // Fisher-Yates で順位 -> 番号 の対応をシャッフルする
+        rankToIndex = new int[n];
+        for (int i = 0; i < n; i++) {
+            rankToIndex[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = rankToIndex[i];
+            rankToIndex[i] = rankToIndex[j];
+            rankToIndex[j] = tmp;
+        }
+    }
+
+    int sample(Random random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        return rankToIndex[Math.min(rank, rankToIndex.length - 1)];
+    }
+}
@@ -0,0 +1,67 @@
+-- 初期スキーマ (以前 sql/schema.sql で起動のたびに実行していた内容)
+-- Flyway 導入前から動いている DB では、ベースライン (version 0) の後にこのスクリプトが実行されるので、
+-- すべて IF NOT EXISTS にして、既にあるテーブル・列・インデックスはそのまま残す
+
+-- ユーザーテーブル
+CREATE TABLE IF NOT EXISTS users (
+    id BIGSERIAL PRIMARY KEY,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    role VARCHAR(50) NOT NULL
+);
+
+-- 投稿テーブル
+CREATE TABLE IF NOT EXISTS posts (
+    id BIGSERIAL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    content TEXT,
+    created_at TIMESTAMP,
+    user_id BIGINT,
+    -- ユーザーが削除されたら、そのユーザーの投稿も削除する (ON DELETE CASCADE)
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+-- いいね！テーブル
+CREATE TABLE IF NOT EXISTS likes (
+    -- 複合主キー (user_id と post_id の組み合わせ)
+    user_id BIGINT NOT NULL,
+    post_id BIGINT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (user_id, post_id),
+
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE
+);
+
+-- コメントテーブル
+CREATE TABLE IF NOT EXISTS comments (
+    id BIGSERIAL PRIMARY KEY,
+    content TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    user_id BIGINT NOT NULL,
+    post_id BIGINT NOT NULL,
+
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE
+);
+
+-- いいね数・コメント数カウンター (非正規化)
+-- 一覧表示で likes / comments を読み込まずに件数を表示するための列
+-- (既存の行は 0 で追加され、起動時の PostCounterRepairJob が実際の件数に修復する)
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS like_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS comment_count INTEGER NOT NULL DEFAULT 0;
+
+-- 投稿一覧 (キーセットページネーション) ・コメント用インデックス
+-- ORDER BY created_at DESC, id DESC と「(created_at, id) より古い」の絞り込みをインデックスだけで処理する
+CREATE INDEX IF NOT EXISTS idx_posts_created_at_id ON posts (created_at DESC, id DESC);
+-- 投稿ごとの「新しい N 件のコメント」と「以前のコメントを表示」用
+CREATE INDEX IF NOT EXISTS idx_comments_post_created_at_id ON comments (post_id, created_at DESC, id DESC);
+
+-- 表示用の本文 HTML・日時 (保存時に作成)
+-- 一覧を表示するたびに本文の変換・日時の整形をしないための列 (ContentRenderer / JstDateFormat)
+-- (既存の行は NULL で追加され、起動時の ContentBackfillJob が埋める)
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS content_html TEXT;
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS created_at_display VARCHAR(16);
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS content_html TEXT;
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS created_at_display VARCHAR(16);
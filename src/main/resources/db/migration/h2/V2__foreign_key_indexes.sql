@@ -0,0 +1,4 @@
+-- 外部キー列のインデックス (PostgreSQL 版と同じ。H2 には CONCURRENTLY がない)
+CREATE INDEX IF NOT EXISTS idx_likes_post_id ON likes (post_id);
+CREATE INDEX IF NOT EXISTS idx_posts_user_id ON posts (user_id);
+CREATE INDEX IF NOT EXISTS idx_comments_user_id ON comments (user_id);
@@ -0,0 +1,12 @@
+-- ID のシーケンスを 50 ずつ進める (PostgreSQL 版と同じ)
+-- H2 の BIGSERIAL は名前のない IDENTITY 列になるので、PostgreSQL と同じ名前のシーケンスを作って列のデフォルトにする
+-- (H2 はテスト用のインメモリ DB で、このマイグレーションの時点では空なので 1 から始める)
+CREATE SEQUENCE IF NOT EXISTS users_id_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS posts_id_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS comments_id_seq START WITH 1 INCREMENT BY 50;
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE posts ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE comments ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT NEXT VALUE FOR users_id_seq;
+ALTER TABLE posts ALTER COLUMN id SET DEFAULT NEXT VALUE FOR posts_id_seq;
+ALTER TABLE comments ALTER COLUMN id SET DEFAULT NEXT VALUE FOR comments_id_seq;
@@ -0,0 +1,11 @@
+-- 外部キー列のインデックス
+-- likes.post_id: PostCounterRepairJob のいいね数の数え直しと、投稿削除時の ON DELETE CASCADE
+--                (主キー (user_id, post_id) は user_id が先頭なので、post_id だけの検索には使えない)
+-- posts.user_id / comments.user_id: ユーザー削除時の ON DELETE CASCADE
+-- (comments.post_id は V1 の idx_comments_post_created_at_id の先頭列なので不要)
+--
+-- 本番のテーブルへの書き込みを止めないよう CONCURRENTLY で作成する
+-- (CONCURRENTLY はトランザクション内で実行できないので、Flyway はこのスクリプトをトランザクションなしで実行する)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_likes_post_id ON likes (post_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_posts_user_id ON posts (user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_comments_user_id ON comments (user_id);
@@ -0,0 +1,7 @@
+-- ID のシーケンスを 50 ずつ進める (User / Post / Comment の @SequenceGenerator の allocationSize と同じ値)
+-- Hibernate は nextval の値から 50 個分の ID をまとめて確保し (pooled-lo)、INSERT を JDBC バッチにまとめられる
+-- ID を指定しない INSERT (JdbcTemplate・手作業) も同じシーケンスから取るので、ID はぶつからない (間が空くだけ)
+-- (既存の行の ID は次の nextval より必ず小さいので、そのまま使える)
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE posts_id_seq INCREMENT BY 50;
+ALTER SEQUENCE comments_id_seq INCREMENT BY 50;
@@ -0,0 +1,48 @@
+package com.example.benchmark;
+
+import com.example.demo.User;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * 以前の Post と同じ ID の生成方法 (IdAllocationBenchmark の比較用に、同じ posts テーブルに必要な列だけ対応付ける)
+ *
+ * com.example.demo の外に置いているので、アプリやテストのエンティティのスキャンには含まれない
+ * (IdAllocationBenchmark が起動するコンテキストにだけ @EntityScan で追加する)。
+ */
+@Entity
+@Table(name = "posts")
+public class LegacyIdentityPost {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String title;
+
+    private String content;
+
+    private LocalDateTime createdAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    protected LegacyIdentityPost() {
+    }
+
+    public LegacyIdentityPost(String title, String content, LocalDateTime createdAt, User user) {
+        this.title = title;
+        this.content = content;
+        this.createdAt = createdAt;
+        this.user = user;
+    }
+}
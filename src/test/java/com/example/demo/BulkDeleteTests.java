@@ -0,0 +1,145 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.unauthenticated;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 投稿・コメント・アカウントの削除 (1文で削除し、いいね・コメントは DB の ON DELETE CASCADE に任せる) のテスト
+ * (テストでは forum.sql.budget.strict=true なので、@SqlStatementBudget を超える SQL が出ればリクエストが失敗する)
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class BulkDeleteTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void deletePostCascadesInOneStatementForOwnerOnly() throws Exception {
+        User owner = testData.createUser("bulk-");
+        Long postId = testData.createPost(owner.getId(), "bulk");
+        for (int i = 0; i < 30; i++) {
+            User other = testData.createUser("bulk-");
+            testData.like(other.getId(), postId);
+            testData.createComment(other.getId(), postId);
+        }
+
+        // 本人以外は削除できない
+        mockMvc.perform(get("/delete/{id}", postId).with(user(new ForumUserDetails(testData.createUser("bulk-")))))
+                .andExpect(redirectedUrl("/"));
+        assertThat(count("posts", "id", postId)).isEqualTo(1);
+
+        mockMvc.perform(get("/delete/{id}", postId).with(user(new ForumUserDetails(owner))))
+                .andExpect(redirectedUrl("/"));
+        assertThat(count("posts", "id", postId)).isZero();
+        assertThat(count("likes", "post_id", postId)).isZero();
+        assertThat(count("comments", "post_id", postId)).isZero();
+    }
+
+    @Test
+    void deleteCommentChecksOwnerAndAdjustsCounter() throws Exception {
+        User author = testData.createUser("bulk-");
+        Long postId = testData.createPost(testData.createUser("bulk-").getId(), "bulk");
+        Long commentId = testData.createComment(author.getId(), postId);
+
+        mockMvc.perform(get("/comments/delete/{id}", commentId).with(user(new ForumUserDetails(testData.createUser("bulk-")))))
+                .andExpect(redirectedUrl("/"));
+        assertThat(count("comments", "id", commentId)).isEqualTo(1);
+
+        mockMvc.perform(get("/comments/delete/{id}", commentId).with(user(new ForumUserDetails(author))))
+                .andExpect(redirectedUrl("/"));
+        assertThat(count("comments", "id", commentId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT comment_count FROM posts WHERE id = ?", Integer.class, postId)).isZero();
+    }
+
+    @Test
+    void deleteAccountRemovesEverythingAndKeepsOtherCountersExact() throws Exception {
+        User leaving = testData.createUser("bulk-");
+        User staying = testData.createUser("bulk-");
+        Long staysPostId = testData.createPost(staying.getId(), "bulk");
+        for (int i = 0; i < 20; i++) {
+            Long ownPostId = testData.createPost(leaving.getId(), "bulk");
+            testData.like(staying.getId(), ownPostId);
+            testData.createComment(staying.getId(), ownPostId);
+        }
+        testData.like(leaving.getId(), staysPostId);
+        testData.createComment(leaving.getId(), staysPostId);
+        testData.createComment(leaving.getId(), staysPostId);
+        testData.createComment(staying.getId(), staysPostId);
+
+        MockHttpSession session = new MockHttpSession();
+        mockMvc.perform(post("/account/delete").session(session).with(user(new ForumUserDetails(leaving))).with(csrf()))
+                .andExpect(redirectedUrl("/login?deleted"));
+
+        assertThat(session.isInvalid()).isTrue();
+        assertThat(userRepository.existsById(leaving.getId())).isFalse();
+        assertThat(count("posts", "user_id", leaving.getId())).isZero();
+        assertThat(count("comments", "user_id", leaving.getId())).isZero();
+        assertThat(count("likes", "user_id", leaving.getId())).isZero();
+
+        // 残ったユーザーの投稿のカウンターは、退会したユーザーの分だけ減っている
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM posts WHERE id = ?", Integer.class, staysPostId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT comment_count FROM posts WHERE id = ?", Integer.class, staysPostId)).isEqualTo(1);
+    }
+
+    @Test
+    void deleteAccountLogsOutTheUsersOtherSessions() throws Exception {
+        String username = testData.createUser("bulk-", passwordEncoder.encode("password")).getUsername();
+        MockHttpSession phone = login(username);
+        MockHttpSession laptop = login(username);
+        mockMvc.perform(get("/").session(laptop)).andExpect(status().isOk())
+                .andExpect(authenticated().withUsername(username));
+
+        mockMvc.perform(post("/account/delete").session(phone).with(csrf()))
+                .andExpect(redirectedUrl("/login?deleted"));
+
+        // もう一方の端末も、次のリクエストでログアウトされる (書き込みをしなくても)
+        mockMvc.perform(get("/").session(laptop))
+                .andExpect(redirectedUrl("/login?deleted"))
+                .andExpect(unauthenticated());
+        assertThat(laptop.isInvalid()).isTrue();
+    }
+
+    private MockHttpSession login(String username) throws Exception {
+        MvcResult result = mockMvc.perform(formLogin("/login").user(username).password("password"))
+                .andExpect(redirectedUrl("/"))
+                .andReturn();
+        return (MockHttpSession) result.getRequest().getSession(false);
+    }
+
+    private int count(String table, String column, Long value) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE " + column + " = ?", Integer.class, value);
+    }
+}
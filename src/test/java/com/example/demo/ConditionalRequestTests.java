@@ -0,0 +1,93 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 条件付きリクエスト (ETag / 304) と静的ファイルのキャッシュ用ヘッダーのテスト
+ * 一覧の SQL が実行されないことを確かめるため、一覧のキャッシュ (FeedCache) は無効にしている
+ */
+@SpringBootTest(properties = "forum.feed.cache.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ConditionalRequestTests {
+
+    private static final Pattern STYLESHEET = Pattern.compile("/css/style-[0-9a-f]{32}\\.css");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void anonymousFeedIsNotModifiedUntilSomethingIsWritten() throws Exception {
+        MvcResult first = mockMvc.perform(get("/"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("W/\"");
+
+        // 何も書き込まれていなければ 304 (一覧の読み込みをしないので SQL も0文)
+        MvcResult notModified = mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertThat(notModified.getRequest().getAttribute(SqlStatementBudgetInterceptor.STATEMENT_COUNT_ATTRIBUTE)).isEqualTo(0);
+
+        // ログイン中は ETag を使わない (いいね済みの表示がユーザーごとに違う)
+        User author = testData.createUser("etag-");
+        mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, etag).with(user(new ForumUserDetails(author))))
+                .andExpect(status().isOk());
+
+        // 投稿すると ETag が変わる
+        mockMvc.perform(post("/create").with(user(new ForumUserDetails(author))).with(csrf())
+                        .param("title", "etag").param("content", "etag"))
+                .andExpect(status().is3xxRedirection());
+        MvcResult changed = mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(changed.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void stylesheetIsServedFromHashedUrlWithImmutableCaching() throws Exception {
+        String html = mockMvc.perform(get("/")).andReturn().getResponse().getContentAsString();
+        Matcher matcher = STYLESHEET.matcher(html);
+        assertThat(matcher.find()).as("ハッシュ付きの CSS の URL").isTrue();
+        String hashedUrl = matcher.group();
+
+        mockMvc.perform(get(hashedUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"));
+        // 圧縮済みのファイルをそのまま返す
+        mockMvc.perform(get(hashedUrl).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)));
+
+        // ハッシュなしの URL は毎回確認させる
+        mockMvc.perform(get("/css/style.css"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.thymeleaf.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一覧1ページ分 (投稿5件 + コメント15件) の本文・日時の表示コスト
+ * - perView: 以前の方法 (表示のたびに #strings.replace と ZoneId / DateTimeFormatter の生成)
+ * - precomputed: 保存時に作った content_html / created_at_display をそのまま使う
+ * - renderOnWrite: 保存時の変換 (ContentRenderer + JstDateFormat) のコスト (1回の書き込みで1件分だけ発生)
+ *
+ * 実行: mvn -B -Pbenchmark verify -Djmh.include=ContentRenderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentRenderBenchmark {
+
+    private static final int ITEMS = 20;
+
+    private final List<String> contents = new ArrayList<>();
+    private final List<LocalDateTime> createdAts = new ArrayList<>();
+    private final List<String> contentHtmls = new ArrayList<>();
+    private final List<String> createdAtDisplays = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < ITEMS; i++) {
+            String content = ("本文 " + i + " <b>太字</b> & \"引用\"\n").repeat(1 + i % 5);
+            LocalDateTime createdAt = base.plusMinutes(i * 37L);
+            contents.add(content);
+            createdAts.add(createdAt);
+            contentHtmls.add(ContentRenderer.toHtml(content));
+            createdAtDisplays.add(JstDateFormat.format(createdAt));
+        }
+    }
+
+    @Benchmark
+    public void perView(Blackhole blackhole) {
+        for (int i = 0; i < ITEMS; i++) {
+            blackhole.consume(StringUtils.replace(contents.get(i), "\n", "<br />"));
+            blackhole.consume(legacyFormattedCreatedAt(createdAts.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void precomputed(Blackhole blackhole) {
+        for (int i = 0; i < ITEMS; i++) {
+            blackhole.consume(contentHtmls.get(i));
+            blackhole.consume(createdAtDisplays.get(i));
+        }
+    }
+
+    @Benchmark
+    public void renderOnWrite(Blackhole blackhole) {
+        blackhole.consume(ContentRenderer.toHtml(contents.get(0)));
+        blackhole.consume(JstDateFormat.format(createdAts.get(0)));
+    }
+
+    // 以前の Post / Comment.getFormattedCreatedAt と同じ処理
+    private static String legacyFormattedCreatedAt(LocalDateTime createdAt) {
+        ZoneId utcZone = ZoneId.of("UTC");
+        ZoneId jstZone = ZoneId.of("Asia/Tokyo");
+        LocalDateTime jstDateTime = createdAt.atZone(utcZone)
+                .withZoneSameInstant(jstZone)
+                .toLocalDateTime();
+        return jstDateTime.format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * 保存時に作る表示用の本文 HTML・日時 (content_html / created_at_display) のテスト
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ContentRenderingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private ContentBackfillJob contentBackfillJob;
+
+    @Test
+    void contentIsEscapedAndRenderedOnSave() throws Exception {
+        User user = testData.createUser("render-");
+        ForumUserDetails principal = new ForumUserDetails(user);
+
+        mockMvc.perform(post("/create").with(user(principal)).with(csrf())
+                .param("title", "render").param("content", "<script>alert(1)</script>\r\n2行目"));
+        Long postId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts WHERE user_id = ?", Long.class, user.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT content_html FROM posts WHERE id = ?", String.class, postId))
+                .isEqualTo("&lt;script&gt;alert(1)&lt;/script&gt;<br />2行目");
+        assertThat(jdbcTemplate.queryForObject("SELECT created_at_display FROM posts WHERE id = ?", String.class, postId))
+                .matches("\\d{4}/\\d{2}/\\d{2} \\d{2}:\\d{2}");
+
+        // 更新時も作り直す
+        mockMvc.perform(post("/update").with(user(principal)).with(csrf())
+                .param("id", postId.toString()).param("title", "render").param("content", "a & b"));
+        assertThat(jdbcTemplate.queryForObject("SELECT content_html FROM posts WHERE id = ?", String.class, postId))
+                .isEqualTo("a &amp; b");
+
+        mockMvc.perform(post("/comments/create").with(user(principal)).with(csrf())
+                .param("postId", postId.toString()).param("content", "<i>x</i>"));
+        assertThat(jdbcTemplate.queryForObject("SELECT content_html FROM comments WHERE post_id = ?", String.class, postId))
+                .isEqualTo("&lt;i&gt;x&lt;/i&gt;");
+    }
+
+    @Test
+    void backfillFillsRowsWrittenWithoutTheEntity() {
+        Long userId = testData.createUser("render-").getId();
+        jdbcTemplate.update("INSERT INTO posts (title, content, created_at, user_id) VALUES ('legacy', ?, ?, ?)",
+                "<b>old</b>\nrow", Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 15, 30)), userId);
+        Long postId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class);
+
+        assertThat(contentBackfillJob.backfill()).isPositive();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT content_html FROM posts WHERE id = ?", String.class, postId))
+                .isEqualTo("&lt;b&gt;old&lt;/b&gt;<br />row");
+        assertThat(jdbcTemplate.queryForObject("SELECT created_at_display FROM posts WHERE id = ?", String.class, postId))
+                .isEqualTo("2025/01/02 00:30");
+        assertThat(contentBackfillJob.backfill()).isZero();
+    }
+}
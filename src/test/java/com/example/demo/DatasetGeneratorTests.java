@@ -0,0 +1,68 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DatasetGenerator (generate-data プロファイル) のテスト
+ * 他のテストのデータと混ざらないよう、別のインメモリDBに生成する (起動時に1回生成される)
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:generator;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "forum.generator.users=200",
+        "forum.generator.posts=1000",
+        "forum.generator.comments=3000",
+        "forum.generator.likes=10000",
+        "forum.generator.batch-size=700",
+        "forum.generator.span=10d",
+        "forum.generator.end=2024-06-01T00:00:00"
+})
+@ActiveProfiles({"test", "generate-data"})
+class DatasetGeneratorTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void generatesSkewedDatasetWithConsistentCounters() {
+        assertThat(count("SELECT COUNT(*) FROM users")).isEqualTo(200);
+        assertThat(count("SELECT COUNT(*) FROM posts")).isEqualTo(1000);
+        assertThat(count("SELECT COUNT(*) FROM comments")).isEqualTo(3000);
+        // 重複した (ユーザー, 投稿) は1件にまとめられる
+        int likes = count("SELECT COUNT(*) FROM likes");
+        assertThat(likes).isBetween(5000, 10000);
+
+        // カウンターは実際の件数と一致している
+        assertThat(count("SELECT COUNT(*) FROM posts p WHERE p.like_count <> (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id) " +
+                "OR p.comment_count <> (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id)")).isZero();
+        // 表示用の列も埋まっている
+        assertThat(count("SELECT COUNT(*) FROM posts WHERE content_html IS NULL OR created_at_display IS NULL")).isZero();
+        assertThat(count("SELECT COUNT(*) FROM comments WHERE content_html IS NULL OR created_at_display IS NULL")).isZero();
+
+        // 日時は実行した時刻ではなく forum.generator.end を基準にする (同じシードなら同じ日時になる)
+        LocalDateTime end = LocalDateTime.of(2024, 6, 1, 0, 0);
+        assertThat(jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM posts", LocalDateTime.class))
+                .isEqualTo(end.minusDays(10));
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(created_at) FROM posts", LocalDateTime.class))
+                .isEqualTo(end.minusDays(10).plusSeconds(Duration.ofDays(10).getSeconds() * 999 / 1000));
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(created_at) FROM comments", LocalDateTime.class))
+                .isBeforeOrEqualTo(end.plusSeconds(1));
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(created_at) FROM likes", LocalDateTime.class)).isEqualTo(end);
+
+        // Zipf 分布: 一番人気の投稿・コメントの多い投稿に平均の何倍も集中する
+        assertThat(count("SELECT MAX(like_count) FROM posts")).isGreaterThan(10 * likes / 1000);
+        assertThat(count("SELECT MAX(comment_count) FROM posts")).isGreaterThan(10 * 3000 / 1000);
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+}
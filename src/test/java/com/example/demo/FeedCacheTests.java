@@ -0,0 +1,121 @@
+package com.example.demo;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * FeedCache (投稿一覧のキャッシュ) のテスト
+ * SQL の発行数は Hibernate の統計 (prepareStatementCount) で数える
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FeedCacheTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private FeedCache feedCache;
+
+    @Autowired
+    private PostStatsCache postStatsCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // 他のテストが SQL で直接入れたデータを読み直させる
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+    }
+
+    @Test
+    void warmPageIssuesNoSql() throws Exception {
+        createPostDirectly("warm");
+
+        mockMvc.perform(get("/")).andExpect(status().isOk());
+        long missesBefore = feedCache.stats().missCount();
+        long hitsBefore = feedCache.stats().hitCount();
+
+        long statementsBefore = statistics.getPrepareStatementCount();
+        mockMvc.perform(get("/"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("warm")));
+        assertThat(statistics.getPrepareStatementCount() - statementsBefore).isZero();
+        assertThat(feedCache.stats().hitCount()).isEqualTo(hitsBefore + 1);
+        assertThat(feedCache.stats().missCount()).isEqualTo(missesBefore);
+    }
+
+    @Test
+    void writesInvalidateAffectedPages() throws Exception {
+        User user = testData.createUser("feed-cache-");
+        ForumUserDetails principal = new ForumUserDetails(user);
+        Long postId = createPostDirectly("cached");
+        mockMvc.perform(get("/")).andExpect(status().isOk());
+
+        // コメント: その投稿を含むページが捨てられ、次の表示で読み直される
+        mockMvc.perform(post("/comments/create").with(user(principal)).with(csrf())
+                .param("postId", postId.toString()).param("content", "fresh-comment"));
+        mockMvc.perform(get("/")).andExpect(content().string(containsString("fresh-comment")));
+
+        // いいね: その投稿を含むページが捨てられ、次の表示で読み直される
+        mockMvc.perform(post("/api/posts/{id}/toggle-like", postId).with(user(principal)).with(csrf()))
+                .andExpect(status().isOk());
+        long statementsBefore = statistics.getPrepareStatementCount();
+        mockMvc.perform(get("/"))
+                .andExpect(content().string(containsString("id=\"like-count-" + postId + "\">1<")));
+        assertThat(statistics.getPrepareStatementCount() - statementsBefore).isPositive();
+        assertThat(postStatsCache.getStats(List.of(postId)).get(postId).likeCount()).isEqualTo(1);
+
+        // 同時に押された切り替えのイベントが順番どおりに届かなくても (ここでは古い値 0 が後から届く)、
+        // イベントの値ではなく DB の値が表示される
+        eventPublisher.publishEvent(FeedChangeEvent.likeCountChanged(postId, 0));
+        mockMvc.perform(get("/"))
+                .andExpect(content().string(containsString("id=\"like-count-" + postId + "\">1<")));
+        assertThat(postStatsCache.getStats(List.of(postId)).get(postId).likeCount()).isEqualTo(1);
+
+        // 新しい投稿: ページ番号のページが捨てられる
+        mockMvc.perform(post("/create").with(user(principal)).with(csrf())
+                .param("title", "brand-new-post").param("content", "x"));
+        mockMvc.perform(get("/")).andExpect(content().string(containsString("brand-new-post")));
+    }
+
+    private Long createPostDirectly(String title) {
+        // 一覧の先頭に来るよう、未来の日時にする
+        Long postId = testData.createPost(testData.createUser("feed-cache-").getId(), title, LocalDateTime.now().plusYears(1));
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+        return postId;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 投稿一覧のキーセットページネーション (/?before=createdAt,id) のテスト
+ * 作成日時が同じ投稿がページの境目をまたいでも、id で順序が決まるので抜けも重複もないこと
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FeedPaginationTests {
+
+    // ほかのテストの投稿より古い日時 (この日時以前の投稿はこのテストのものだけ)
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(1990, 1, 1, 0, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final List<Long> postIds = new ArrayList<>();
+
+    @AfterEach
+    void deletePosts() {
+        for (Long id : postIds) {
+            jdbcTemplate.update("DELETE FROM posts WHERE id = ?", id);
+        }
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+    }
+
+    @Test
+    void pagingThroughPostsWithEqualCreatedAtVisitsEachPostOnce() throws Exception {
+        // 1. 3ページ分 (ページの境目が同じ日時の投稿の間に来る) を、すべて同じ日時で作る
+        Long userId = testData.createUser("paging-").getId();
+        for (int i = 0; i < PostController.PAGE_SIZE * 2 + 3; i++) {
+            postIds.add(testData.createPost(userId, "paging-" + i, CREATED_AT));
+        }
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+
+        // 2. その日時より少しだけ新しい位置から「次へ」をたどる
+        String before = new FeedCursor(CREATED_AT.plusSeconds(1), 0L).toString();
+        List<Long> visited = new ArrayList<>();
+        int pages = 0;
+        while (before != null) {
+            MvcResult result = mockMvc.perform(get("/").param("before", before))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            @SuppressWarnings("unchecked")
+            List<PostCard> feed = (List<PostCard>) result.getModelAndView().getModel().get("feed");
+            assertThat(feed).hasSizeLessThanOrEqualTo(PostController.PAGE_SIZE);
+            feed.forEach(post -> visited.add(post.id()));
+            before = (String) result.getModelAndView().getModel().get("nextCursor");
+            pages++;
+        }
+
+        // 3. id の降順に、どの投稿もちょうど1回ずつ表示される
+        assertThat(pages).isEqualTo(3);
+        assertThat(visited).isEqualTo(postIds.stream().sorted(Comparator.reverseOrder()).toList());
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * 投稿一覧の読み込み + 描画 (組み込み H2 にデータを入れて計測)
+ * 以前の findAllPostsWithUserAndLikes は PostFeedLoader (関連ごとの IN クエリ + DTO) に置き換わったので、そちらを計測する
+ * - loadFirstPage: 先頭ページの読み込み (ID取得 + 投稿 + コメント の SQL)
+ * - loadDeepPage: 奥のページをカーソル (キーセット) で読み込む
+ * - renderFirstPage: GET / 全体 (Spring Security + 読み込み + Thymeleaf の描画)。FeedCache は無効にしている
+ *
+ * 実行: mvn -B -Pbenchmark verify -Djmh.include=FeedPipelineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedPipelineBenchmark {
+
+    private static final int PAGE_SIZE = 5;
+
+    // 投稿数 (ユーザー数は投稿数の 1/50、コメントは 0〜8 件/投稿、いいねは 0〜20 件/投稿)
+    @Param({"10000"})
+    private int posts;
+
+    private ConfigurableApplicationContext context;
+    private PostFeedLoader postFeedLoader;
+    private MockMvc mockMvc;
+    private FeedCursor deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DemoApplication.class)
+                .profiles("test")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:feed-benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                        "server.port=0",
+                        "forum.feed.cache.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        try {
+            postFeedLoader = context.getBean(PostFeedLoader.class);
+            mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).apply(springSecurity()).build();
+
+            seed(context.getBean(JdbcTemplate.class));
+            context.getBean(PostRepository.class).repairCounters();
+
+            List<PostCard> middle = postFeedLoader.loadPage(null, posts / PAGE_SIZE / 2, PAGE_SIZE).posts();
+            deepCursor = FeedCursor.parse(middle.get(middle.size() - 1).cursor());
+        } catch (RuntimeException e) {
+            // 準備に失敗すると TearDown は呼ばれないので、ここで閉じる (閉じないと Tomcat のスレッドが残り、JVM が終わらない)
+            context.close();
+            throw e;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public FeedPage loadFirstPage() {
+        return postFeedLoader.loadPage(null, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FeedPage loadDeepPage() {
+        return postFeedLoader.loadPage(deepCursor, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public String renderFirstPage() throws Exception {
+        return mockMvc.perform(get("/")).andReturn().getResponse().getContentAsString();
+    }
+
+    // 乱数のシードを固定して、毎回同じデータを JDBC バッチで入れる
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+        int users = Math.max(posts / 50, 20);
+        List<Object[]> userRows = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            userRows.add(new Object[] {"bench-" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password, role) VALUES (?, 'x', 'USER')", userRows);
+        // ID はシーケンスから 50 件ずつ確保されるので連番とは限らない (V3)。入れた行の ID を読み直して使う
+        long[] userIds = ids(jdbcTemplate, "users");
+
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Object[]> postRows = new ArrayList<>();
+        for (int i = 0; i < posts; i++) {
+            String content = "ベンチマーク用の本文 " + i + "\n2行目";
+            LocalDateTime createdAt = base.plusMinutes(i);
+            postRows.add(new Object[] {"post " + i, content, ContentRenderer.toHtml(content),
+                    Timestamp.valueOf(createdAt), JstDateFormat.format(createdAt), userIds[random.nextInt(users)]});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO posts (title, content, content_html, created_at, created_at_display, user_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", postRows);
+        // (作成日時の順に入れたので、ID の順 = i の順)
+        long[] postIds = ids(jdbcTemplate, "posts");
+
+        List<Object[]> commentRows = new ArrayList<>();
+        List<Object[]> likeRows = new ArrayList<>();
+        for (int i = 0; i < posts; i++) {
+            long postId = postIds[i];
+            LocalDateTime postedAt = base.plusMinutes(i);
+            for (int c = random.nextInt(9); c > 0; c--) {
+                String content = "コメント " + c;
+                LocalDateTime createdAt = postedAt.plusSeconds(c);
+                commentRows.add(new Object[] {content, ContentRenderer.toHtml(content), Timestamp.valueOf(createdAt),
+                        JstDateFormat.format(createdAt), userIds[random.nextInt(users)], postId});
+            }
+            int likes = random.nextInt(21);
+            int start = random.nextInt(users);
+            for (int l = 0; l < likes; l++) {
+                likeRows.add(new Object[] {userIds[(start + l) % users], postId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO comments (content, content_html, created_at, created_at_display, user_id, post_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", commentRows);
+        jdbcTemplate.batchUpdate("INSERT INTO likes (user_id, post_id) VALUES (?, ?)", likeRows);
+    }
+
+    private static long[] ids(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " ORDER BY id", Long.class).stream()
+                .mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ForumExporter / ForumImporter のテスト
+ * 書き出したデータを消して読み込み直し、元と同じになることを確かめる (他のテストと混ざらないよう別のインメモリDBを使う)
+ * fetch-size / checkpoint-interval / batch-size を小さくして、途中からの再開も確かめる
+ * 既にデータのある DB には混ぜずに失敗することも確かめる
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transfer;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "forum.transfer.fetch-size=7",
+        "forum.transfer.checkpoint-interval=10",
+        "forum.transfer.batch-size=9"
+})
+@ActiveProfiles("test")
+class ForumDataTransferTests {
+
+    private static final List<String> SNAPSHOT_QUERIES = List.of(
+            "SELECT * FROM users ORDER BY id",
+            "SELECT * FROM posts ORDER BY id",
+            "SELECT * FROM comments ORDER BY id",
+            "SELECT * FROM likes ORDER BY user_id, post_id");
+
+    @Autowired
+    private ForumExporter exporter;
+
+    @Autowired
+    private ForumImporter importer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void exportAndImportRoundTripWithResume() throws Exception {
+        seed();
+        List<List<Map<String, Object>>> before = snapshot();
+
+        // 1. 最後まで書き出す
+        Path full = tempDir.resolve("full.jsonl");
+        long rows = exporter.export(full);
+        List<String> lines = Files.readAllLines(full, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize((int) rows);
+        assertThat(Files.exists(TransferCheckpoint.pathFor(full, ForumExporter.CHECKPOINT_OPERATION))).isFalse();
+
+        // 2. 途中 (posts の 20 行目の後) で止まった状態を作り、再開すると同じファイルになる
+        Path resumed = tempDir.resolve("resumed.jsonl");
+        int users = count("users");
+        int cut = users + 20;
+        String head = String.join("\n", lines.subList(0, cut)) + "\n";
+        long lastPostId = jdbcTemplate.queryForObject("SELECT id FROM posts ORDER BY id OFFSET 19 ROWS FETCH FIRST 1 ROW ONLY", Long.class);
+        // チェックポイントより後ろに書きかけの行があっても切り捨てられる
+        Files.writeString(resumed, head + "{\"table\":\"posts\",\"id\":", StandardCharsets.UTF_8);
+        new TransferCheckpoint(ForumDataTable.POSTS.name(), String.valueOf(lastPostId), head.getBytes(StandardCharsets.UTF_8).length)
+                .save(TransferCheckpoint.pathFor(resumed, ForumExporter.CHECKPOINT_OPERATION));
+        assertThat(exporter.export(resumed)).isEqualTo(rows - cut);
+        assertThat(Files.readAllLines(resumed, StandardCharsets.UTF_8)).isEqualTo(lines);
+
+        // 3. 全部消して、途中まで読み込んだ状態から再開する
+        wipe();
+        Path partial = tempDir.resolve("partial.jsonl");
+        Files.write(partial, lines.subList(0, users + 5), StandardCharsets.UTF_8);
+        importer.importFrom(partial);
+        Files.copy(full, partial, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        // 読み込み済みの行数より少し前から再開させる (入れ済みの行は、ファイルと同じ内容なので無視される)
+        new TransferCheckpoint(ForumDataTable.POSTS.name(), null, users)
+                .save(TransferCheckpoint.pathFor(partial, ForumImporter.CHECKPOINT_OPERATION));
+        assertThat(importer.importFrom(partial)).isEqualTo(rows - users);
+        assertThat(Files.exists(TransferCheckpoint.pathFor(partial, ForumImporter.CHECKPOINT_OPERATION))).isFalse();
+
+        // 4. ID・カウンターを含めて元と同じ
+        assertThat(snapshot()).isEqualTo(before);
+
+        // 5. シーケンスが進んでいるので、新しい行の ID はぶつからない
+        Long maxPostId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class);
+        jdbcTemplate.update("INSERT INTO posts (title, content, created_at, user_id) VALUES ('new', 'new', ?, ?)",
+                Timestamp.valueOf(LocalDateTime.now()), jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class));
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class)).isEqualTo(maxPostId + 1);
+    }
+
+    @Test
+    void importRefusesToMergeIntoExistingRows() throws Exception {
+        seed();
+        Path full = tempDir.resolve("full.jsonl");
+        exporter.export(full);
+        List<String> lines = Files.readAllLines(full, StandardCharsets.UTF_8);
+        int users = count("users");
+
+        // 1. 行のある DB には、最初から入れようとすると何も入れずに失敗する
+        List<List<Map<String, Object>>> before = snapshot();
+        assertThatThrownBy(() -> importer.importFrom(full))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("users");
+        assertThat(snapshot()).isEqualTo(before);
+
+        // 2. 再開直後のバッチが入れ済みの行とぶつかっても、内容が違えば無視せずに失敗する
+        wipe();
+        Path partial = tempDir.resolve("partial.jsonl");
+        Files.write(partial, lines.subList(0, users + 5), StandardCharsets.UTF_8);
+        importer.importFrom(partial);
+        Long firstPostId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM posts", Long.class);
+        jdbcTemplate.update("UPDATE posts SET title = 'changed' WHERE id = ?", firstPostId);
+        Files.copy(full, partial, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        new TransferCheckpoint(ForumDataTable.POSTS.name(), null, users)
+                .save(TransferCheckpoint.pathFor(partial, ForumImporter.CHECKPOINT_OPERATION));
+        assertThatThrownBy(() -> importer.importFrom(partial))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("posts の id=" + firstPostId);
+        // そのバッチはロールバックされ、チェックポイントは残る
+        assertThat(count("posts")).isEqualTo(5);
+        assertThat(Files.exists(TransferCheckpoint.pathFor(partial, ForumImporter.CHECKPOINT_OPERATION))).isTrue();
+    }
+
+    private void seed() {
+        wipe();
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_000_000);
+        for (int u = 0; u < 6; u++) {
+            jdbcTemplate.update("INSERT INTO users (username, password, role) VALUES (?, ?, 'USER')",
+                    "transfer-" + u, "$2a$10$hash\"with\\escapes" + u);
+        }
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class);
+        for (int p = 0; p < 45; p++) {
+            // content_html / created_at_display は NULL の行も混ぜる
+            jdbcTemplate.update("INSERT INTO posts (title, content, content_html, created_at, created_at_display, user_id) VALUES (?, ?, ?, ?, ?, ?)",
+                    "投稿 " + p, "本文\n改行と \"引用符\" " + p, p % 3 == 0 ? null : "<p>本文</p>",
+                    Timestamp.valueOf(now.plusMinutes(p)), p % 3 == 0 ? null : "2024/05/01 21:00", userIds.get(p % userIds.size()));
+        }
+        List<Long> postIds = jdbcTemplate.queryForList("SELECT id FROM posts ORDER BY id", Long.class);
+        for (int c = 0; c < 30; c++) {
+            jdbcTemplate.update("INSERT INTO comments (content, created_at, user_id, post_id) VALUES (?, ?, ?, ?)",
+                    "コメント " + c, Timestamp.valueOf(now.plusSeconds(c)), userIds.get(c % userIds.size()), postIds.get(c % 7));
+        }
+        for (Long userId : userIds) {
+            for (int i = 0; i < postIds.size(); i += 1 + (int) (userId % 3)) {
+                jdbcTemplate.update("INSERT INTO likes (user_id, post_id, created_at) VALUES (?, ?, ?)",
+                        userId, postIds.get(i), Timestamp.valueOf(now));
+            }
+        }
+        jdbcTemplate.update("UPDATE posts p SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id), " +
+                "comment_count = (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id)");
+    }
+
+    private void wipe() {
+        for (String table : List.of("likes", "comments", "posts", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+        assertThat(count("users")).isZero();
+    }
+
+    private List<List<Map<String, Object>>> snapshot() {
+        return SNAPSHOT_QUERIES.stream().map(jdbcTemplate::queryForList).toList();
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+/**
+ * ForumUserDetails (ユーザーIDを持つプリンシパル) のテスト
+ * ユーザー名での検索をしなくなっても、削除済みユーザーのセッションは拒否されること
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ForumPrincipalTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void principalIdIsUsedForPostsAndLikes() throws Exception {
+        User user = testData.createUser("principal-");
+        ForumUserDetails principal = new ForumUserDetails(user);
+
+        mockMvc.perform(post("/create").with(user(principal)).with(csrf())
+                        .param("title", "principal").param("content", "principal"))
+                .andExpect(redirectedUrl("/"));
+        Long postId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts WHERE user_id = ?", Long.class, user.getId());
+        assertThat(postId).isNotNull();
+
+        mockMvc.perform(post("/api/posts/{id}/toggle-like", postId).with(user(principal)).with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likeCount").value(1))
+                .andExpect(jsonPath("$.userLiked").value(true));
+
+        // 一覧では、表示中のページの投稿についてだけ「いいね済み」を調べる (このユーザーがいいね！したのは1件だけ)
+        mockMvc.perform(get("/").with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("data-liked=\"true\"")));
+    }
+
+    @Test
+    void deletedUserSessionIsRejected() throws Exception {
+        User owner = testData.createUser("principal-");
+        Long postId = testData.createPost(owner.getId(), "principal");
+
+        // ログイン後にユーザーが削除された (セッションのプリンシパルだけが残っている)
+        User deleted = testData.createUser("principal-");
+        ForumUserDetails principal = new ForumUserDetails(deleted);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", deleted.getId());
+
+        mockMvc.perform(post("/create").with(user(principal)).with(csrf())
+                        .param("title", "ghost").param("content", "ghost"))
+                .andExpect(redirectedUrl("/login?logout"));
+        mockMvc.perform(post("/comments/create").with(user(principal)).with(csrf())
+                        .param("postId", postId.toString()).param("content", "ghost"))
+                .andExpect(redirectedUrl("/login?logout"));
+        mockMvc.perform(post("/api/posts/{id}/toggle-like", postId).with(user(principal)).with(csrf()))
+                .andExpect(status().isUnauthorized());
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM posts WHERE title = 'ghost'", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT comment_count FROM posts WHERE id = ?", Integer.class, postId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM posts WHERE id = ?", Integer.class, postId)).isZero();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 書き込み・一覧表示で毎回通る処理のマイクロベンチマーク (DB なし)
+ * 各 legacy* は以前の実装を同じ形で残したもの (比較用)
+ * - normalizeContent: 本文の改行コード正規化 (正規表現の replaceAll / 文字列置換の replace)
+ * - formattedCreatedAt: 日時の JST 表示 (呼び出しごとに ZoneId / DateTimeFormatter を作る / 使い回す)
+ * - feedOrder: 取得した投稿を ID リストの順に並べ直す (indexOf の比較関数で sort / HashMap で引く)
+ *
+ * 実行: mvn -B -Pbenchmark verify -Djmh.include=HotPathBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    // 1ページの投稿数 (並べ直しのコストはこの数で変わる)
+    @Param({"5", "50", "500"})
+    private int pageSize;
+
+    private String content;
+    private Post post;
+    private List<Long> orderedIds;
+    private List<Post> unorderedPosts;
+
+    @Setup
+    public void setUp() {
+        content = "1行目の本文です。\r\n2行目 <b>太字</b>\r\n\r\n".repeat(20);
+
+        post = new Post();
+        post.setCreatedAt(LocalDateTime.of(2025, 1, 1, 12, 34));
+
+        orderedIds = new ArrayList<>();
+        unorderedPosts = new ArrayList<>();
+        for (long id = 1; id <= pageSize; id++) {
+            orderedIds.add(id * 7);
+            Post p = new Post();
+            p.setId(id * 7);
+            unorderedPosts.add(p);
+        }
+        Collections.shuffle(unorderedPosts, new Random(42));
+    }
+
+    @Benchmark
+    public String legacyNormalizeContent() {
+        return content.replaceAll("\r\n", "\n");
+    }
+
+    @Benchmark
+    public String normalizeContent() {
+        return PostController.normalizeContent(content);
+    }
+
+    @Benchmark
+    public String legacyFormattedCreatedAt() {
+        ZoneId utcZone = ZoneId.of("UTC");
+        ZoneId jstZone = ZoneId.of("Asia/Tokyo");
+        LocalDateTime jstDateTime = post.getCreatedAt().atZone(utcZone)
+                .withZoneSameInstant(jstZone)
+                .toLocalDateTime();
+        return jstDateTime.format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"));
+    }
+
+    @Benchmark
+    public String formattedCreatedAt() {
+        // created_at_display がない (保存前の) エンティティなので、JstDateFormat で整形する
+        return post.getFormattedCreatedAt();
+    }
+
+    @Benchmark
+    public List<Post> legacyFeedOrder() {
+        List<Post> posts = new ArrayList<>(unorderedPosts);
+        posts.sort((p1, p2) -> Long.compare(orderedIds.indexOf(p1.getId()), orderedIds.indexOf(p2.getId())));
+        return posts;
+    }
+
+    @Benchmark
+    public List<Post> feedOrder() {
+        // PostFeedLoader.load と同じ方法
+        Map<Long, Post> byId = new HashMap<>();
+        for (Post p : unorderedPosts) {
+            byId.put(p.getId(), p);
+        }
+        List<Post> posts = new ArrayList<>(orderedIds.size());
+        for (Long id : orderedIds) {
+            Post p = byId.get(id);
+            if (p != null) {
+                posts.add(p);
+            }
+        }
+        return posts;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo;
+
+import com.example.benchmark.LegacyIdentityPost;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JPA での投稿の一括 INSERT (組み込み H2 で計測)
+ * - legacyIdentityInsert: 以前の GenerationType.IDENTITY (1件ごとに INSERT して生成された ID を受け取る。LegacyIdentityPost)
+ * - sequenceBatchedInsert: 今の Post (シーケンスから 50 件ずつ ID を確保し、INSERT を JDBC バッチにまとめる)
+ * どちらも rows 件を1トランザクションで persist する
+ * (組み込み DB は往復のコストがほぼないので、ネットワーク越しの PostgreSQL では差がさらに大きくなる)
+ *
+ * 実行: mvn -B -Pbenchmark verify -Djmh.include=IdAllocationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdAllocationBenchmark {
+
+    @Param({"1000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private Long userId;
+
+    /**
+     * アプリのエンティティに加えて LegacyIdentityPost を読み込ませる (このベンチマークのコンテキストだけ)
+     */
+    @EntityScan(basePackageClasses = {DemoApplication.class, LegacyIdentityPost.class})
+    static class LegacyEntityScan {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DemoApplication.class, LegacyEntityScan.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:id-benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                        "logging.level.root=WARN")
+                .run();
+        entityManager = context.getBean(EntityManager.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO users (username, password, role) VALUES ('id-benchmark', 'x', 'USER')");
+        userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'id-benchmark'", Long.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deletePosts() {
+        // テーブルが大きくなり続けないよう、計測の区切りごとに消す
+        jdbcTemplate.update("DELETE FROM posts");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void legacyIdentityInsert() {
+        transactionTemplate.executeWithoutResult(status -> {
+            User author = entityManager.getReference(User.class, userId);
+            for (int i = 0; i < rows; i++) {
+                entityManager.persist(new LegacyIdentityPost("identity " + i, "identity", LocalDateTime.now(), author));
+            }
+        });
+    }
+
+    @Benchmark
+    public void sequenceBatchedInsert() {
+        transactionTemplate.executeWithoutResult(status -> {
+            User author = entityManager.getReference(User.class, userId);
+            for (int i = 0; i < rows; i++) {
+                Post post = new Post();
+                post.setTitle("sequence " + i);
+                post.setContent("sequence");
+                post.setUser(author);
+                entityManager.persist(post);
+            }
+        });
+    }
+}
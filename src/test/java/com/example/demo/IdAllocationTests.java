@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * シーケンス (pooled-lo, 50 件ずつ) による ID の確保と INSERT の JDBC バッチのテスト
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class IdAllocationTests {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void bulkSaveIsBatched() {
+        User author = testData.createUser("ids-");
+
+        // 120 件の INSERT は 50 件ずつ 3 回のバッチになり、ID の確保 (nextval) も 50 件に 1 回で済む
+        SqlStatementCounter.begin("bulk-save", Integer.MAX_VALUE, false);
+        SqlStatementCounter.RequestStatements statements;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Post> posts = new ArrayList<>();
+                for (int i = 0; i < 120; i++) {
+                    Post post = new Post();
+                    post.setTitle("batch " + i);
+                    post.setContent("batch " + i);
+                    post.setUser(author);
+                    posts.add(post);
+                }
+                postRepository.saveAll(posts);
+            });
+        } finally {
+            statements = SqlStatementCounter.end();
+        }
+        // IDENTITY のときは 120 文
+        assertThat(statements.count()).isLessThanOrEqualTo(3 + 4);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM posts WHERE title LIKE 'batch %'", Integer.class))
+                .isEqualTo(120);
+    }
+
+    @Test
+    void jpaAndPlainSqlInsertsShareTheSequence() {
+        User author = testData.createUser("ids-");
+        Long userId = author.getId();
+
+        // JPA (確保した 50 件から順に使う) と ID を指定しない INSERT (その都度 nextval) を交互に行っても ID はぶつからない
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 120; i++) {
+            Post post = new Post();
+            post.setTitle("shared " + i);
+            post.setContent("shared");
+            post.setUser(author);
+            ids.add(postRepository.save(post).getId());
+
+            jdbcTemplate.update("INSERT INTO posts (title, content, created_at, user_id) VALUES (?, 'shared', ?, ?)",
+                    "shared-sql " + i, Timestamp.valueOf(LocalDateTime.now()), userId);
+            ids.add(jdbcTemplate.queryForObject("SELECT id FROM posts WHERE title = ?", Long.class, "shared-sql " + i));
+        }
+        assertThat(ids).hasSize(240);
+    }
+}
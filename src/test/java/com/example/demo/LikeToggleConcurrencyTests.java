@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LikeRepository.toggleLike を多数のスレッドから同じ投稿に対して同時に実行し、
+ * いいね！数カウンターと likes テーブルの件数がずれないことを確認する
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LikeToggleConcurrencyTests {
+
+    private static final int USERS = 20;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private LikeRepository likeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void concurrentTogglesKeepCountsExact() throws Exception {
+        // 準備: ユーザー USERS 人と投稿1件
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(testData.createUser("like-race-" + i + "-").getId());
+        }
+        Long postId = testData.createPost(userIds.get(0), "race");
+
+        // 1. ユーザー i は (i + 1) 回切り替える -> 回数が奇数のユーザーだけが最終的に「いいね」状態
+        //    (ユーザーごとの切り替えは順番に、ユーザー同士は同時に同じ投稿へ実行する)
+        int expectedLikes = 0;
+        for (int i = 0; i < USERS; i++) {
+            if ((i + 1) % 2 == 1) {
+                expectedLikes++;
+            }
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            Long userId = userIds.get(i);
+            int times = i + 1;
+            tasks.add(() -> {
+                for (int n = 0; n < times; n++) {
+                    assertThat(likeRepository.toggleLike(userId, postId)).isPresent();
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        assertThat(countLikeRows(postId)).isEqualTo(expectedLikes);
+        assertThat(likeCountColumn(postId)).isEqualTo(expectedLikes);
+        for (int i = 0; i < USERS; i++) {
+            Integer liked = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE post_id = ? AND user_id = ?",
+                    Integer.class, postId, userIds.get(i));
+            assertThat(liked).as("user %d", i).isEqualTo((i + 1) % 2);
+        }
+
+        // 2. ダブルクリック: 同じユーザーの切り替えが同時に届いても、主キー重複エラーにならず
+        //    カウンターと likes の件数が一致したままであること
+        List<Callable<Void>> doubleClicks = new ArrayList<>();
+        for (Long userId : userIds) {
+            for (int n = 0; n < 2; n++) {
+                doubleClicks.add(() -> {
+                    assertThat(likeRepository.toggleLike(userId, postId)).isPresent();
+                    return null;
+                });
+            }
+        }
+        Collections.shuffle(doubleClicks);
+        runConcurrently(doubleClicks);
+
+        assertThat(likeCountColumn(postId)).isEqualTo(countLikeRows(postId));
+    }
+
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get(); // 例外 (主キー重複など) があればここでテスト失敗
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private int countLikeRows(Long postId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE post_id = ?", Integer.class, postId);
+    }
+
+    private int likeCountColumn(Long postId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM posts WHERE id = ?", Integer.class, postId);
+    }
+
+    @Test
+    void toggleOnMissingPostReturnsEmpty() {
+        assertThat(likeRepository.toggleLike(1L, Long.MAX_VALUE)).isEmpty();
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * LikeWriteBehindBuffer (write-behind モード) のテスト
+ * 定期書き込みは実質止めておき (flush-interval-ms を長くする)、テストから flush() を呼ぶ
+ * 行ロックで書き込みを止めるテストがあるので、H2 のロック待ちの上限をバックプレッシャーの待ち時間より長くしている
+ * 一覧などの読み込みの途中に書き込みを割り込ませるテストは、PostRepository を ReadHookConfig で包んで行う
+ */
+@SpringBootTest(properties = {
+        "forum.likes.write-behind.enabled=true",
+        "forum.likes.write-behind.flush-interval-ms=3600000",
+        "forum.likes.write-behind.flush-threshold=100000",
+        "forum.likes.write-behind.capacity=50",
+        "spring.datasource.hikari.connection-init-sql=SET LOCK_TIMEOUT 20000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LikeWriteBehindBufferTests.ReadHookConfig.class)
+class LikeWriteBehindBufferTests {
+
+    @Autowired
+    private LikeWriteBehindBuffer buffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FeedCache feedCache;
+
+    @Autowired
+    private PostStatsCache postStatsCache;
+
+    @Autowired
+    private ForumContentVersion contentVersion;
+
+    @Test
+    void repeatedFlipsAreCoalescedAndAnsweredFromBuffer() {
+        Long userId = testData.createUser("buffer-").getId();
+        Long postId = testData.createPost(userId, "buffer");
+
+        assertThat(buffer.toggle(userId, postId)).contains(new LikeToggleResult(true, 1));
+        assertThat(buffer.toggle(userId, postId)).contains(new LikeToggleResult(false, 0));
+        assertThat(buffer.toggle(userId, postId)).contains(new LikeToggleResult(true, 1));
+
+        // まだDBには書き込まれていない
+        assertThat(countLikeRows(postId)).isZero();
+
+        assertThat(buffer.flush()).isTrue();
+        assertThat(countLikeRows(postId)).isEqualTo(1);
+        assertThat(likeCountColumn(postId)).isEqualTo(1);
+
+        // 書き込み後はDBの状態から続けて切り替えられる
+        assertThat(buffer.toggle(userId, postId)).contains(new LikeToggleResult(false, 0));
+        assertThat(buffer.flush()).isTrue();
+        assertThat(countLikeRows(postId)).isZero();
+        assertThat(likeCountColumn(postId)).isZero();
+    }
+
+    @Test
+    void toggleOnMissingPostReturnsEmpty() {
+        assertThat(buffer.toggle(testData.createUser("buffer-").getId(), Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void concurrentTogglesWithInterleavedFlushesStayExact() throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            userIds.add(testData.createUser("buffer-").getId());
+        }
+        Long postId = testData.createPost(userIds.get(0), "buffer");
+
+        // ユーザー i は (i + 1) 回切り替える。同時に書き込みも何度も走らせる
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            Long userId = userIds.get(i);
+            int times = i + 1;
+            tasks.add(() -> {
+                for (int n = 0; n < times; n++) {
+                    assertThat(buffer.toggle(userId, postId)).isPresent();
+                }
+                return null;
+            });
+        }
+        for (int i = 0; i < 5; i++) {
+            tasks.add(() -> {
+                for (int n = 0; n < 20; n++) {
+                    buffer.flush();
+                    Thread.sleep(1);
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(buffer.flush()).isTrue();
+
+        int expectedLikes = 0;
+        for (int i = 0; i < userIds.size(); i++) {
+            if ((i + 1) % 2 == 1) {
+                expectedLikes++;
+            }
+        }
+        assertThat(countLikeRows(postId)).isEqualTo(expectedLikes);
+        assertThat(likeCountColumn(postId)).isEqualTo(expectedLikes);
+    }
+
+    @Test
+    void fullBufferIsFlushedByTheCaller() {
+        Long postId = testData.createPost(testData.createUser("buffer-").getId(), "buffer");
+        double flushedBefore = meterRegistry.counter("forum.likes.buffer.flushed").count();
+
+        // capacity=50 を超える数の (ユーザー, 投稿) を切り替える。
+        // 定期書き込みは止めてあるので、51件目は呼び出し元のスレッドで書き込んでから追加される
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Long userId = testData.createUser("buffer-").getId();
+            userIds.add(userId);
+            assertThat(buffer.toggle(userId, postId)).contains(new LikeToggleResult(true, i + 1));
+        }
+        assertThat(countLikeRows(postId)).isEqualTo(50);
+        assertThat(likeCountColumn(postId)).isEqualTo(50);
+        assertThat(meterRegistry.counter("forum.likes.buffer.flushed").count() - flushedBefore).isEqualTo(50);
+        assertThat(meterRegistry.get("forum.likes.buffer.depth").gauge().value()).isEqualTo(10);
+
+        assertThat(buffer.flush()).isTrue();
+        assertThat(countLikeRows(postId)).isEqualTo(userIds.size());
+        assertThat(likeCountColumn(postId)).isEqualTo(userIds.size());
+    }
+
+    @Test
+    void fullBufferAnswers503WhenItCannotBeFlushed() throws Exception {
+        Long lockedPostId = testData.createPost(testData.createUser("buffer-").getId(), "buffer");
+        Long postId = testData.createPost(testData.createUser("buffer-").getId(), "buffer");
+        double rejectedBefore = meterRegistry.counter("forum.likes.buffer.rejected").count();
+
+        // 1. 別のトランザクションで投稿の行をロックし、その投稿の書き込み (カウンターの数え直し) を止めておく
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> lockHolder = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM posts WHERE id = ? FOR UPDATE", lockedPostId);
+                locked.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // 2. その投稿への切り替えを書き込ませる (ロックが外れるまで書き込み中のまま)
+            assertThat(buffer.toggle(testData.createUser("buffer-").getId(), lockedPostId)).isPresent();
+            Future<Boolean> blockedFlush = executor.submit(() -> buffer.flush());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (meterRegistry.get("forum.likes.buffer.in-flight").gauge().value() < 1) {
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                Thread.sleep(5);
+            }
+
+            // 3. バッファを満杯にする。次の新しい切り替えは書き込みを手伝えない (書き込み中) ので、待ったあと 503 になる
+            for (int i = 0; i < 50; i++) {
+                assertThat(buffer.toggle(testData.createUser("buffer-").getId(), postId)).isPresent();
+            }
+            User overflow = testData.createUser("buffer-");
+            mockMvc.perform(post("/api/posts/{id}/toggle-like", postId).with(user(new ForumUserDetails(overflow))).with(csrf()))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.error").exists());
+            assertThat(meterRegistry.counter("forum.likes.buffer.rejected").count() - rejectedBefore).isEqualTo(1);
+
+            // 4. ロックを外せば止まっていた書き込みが終わり、残りも書き込める
+            release.countDown();
+            lockHolder.get(10, TimeUnit.SECONDS);
+            assertThat(blockedFlush.get(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertThat(buffer.flush()).isTrue();
+        assertThat(countLikeRows(lockedPostId)).isEqualTo(1);
+        assertThat(countLikeRows(postId)).isEqualTo(50);
+    }
+
+    @Test
+    void flushBetweenDbReadAndPendingDeltaIsNotLeftInCaches() {
+        Long userId = testData.createUser("buffer-").getId();
+        LocalDateTime createdAt = LocalDateTime.now().minusYears(10).truncatedTo(ChronoUnit.SECONDS);
+        Long postId = testData.createPost(userId, "buffer", createdAt);
+        // この投稿だけが載るページ
+        FeedCursor cursor = new FeedCursor(createdAt, postId + 1);
+
+        // 1. 一覧: DB のいいね数 (0) を読んだ直後、未書き込み分 (+1) を足す前に書き込みが終わる。
+        //    その読み込みは 0 を返すが、キャッシュには残らず、次の表示では 1 になる
+        assertThat(buffer.toggle(userId, postId)).contains(new LikeToggleResult(true, 1));
+        String etag = contentVersion.etag();
+        flushAfterNextRead();
+        feedCache.getPage(cursor, 0, 1);
+        assertThat(ReadHookConfig.afterNextRead.get()).isNull();
+        assertThat(likeCountOnPage(cursor)).isEqualTo(1);
+        // 未ログインの一覧の ETag も進む
+        assertThat(contentVersion.etag()).isNotEqualTo(etag);
+
+        // 2. いいね数の API (PostStatsCache) も同じ
+        assertThat(buffer.toggle(testData.createUser("buffer-").getId(), postId)).contains(new LikeToggleResult(true, 2));
+        flushAfterNextRead();
+        postStatsCache.getStats(List.of(postId));
+        assertThat(ReadHookConfig.afterNextRead.get()).isNull();
+        assertThat(postStatsCache.getStats(List.of(postId)).get(postId).likeCount()).isEqualTo(2);
+        assertThat(likeCountOnPage(cursor)).isEqualTo(2);
+    }
+
+    // 次の投稿の読み込みの直後に、別のスレッド (別のトランザクション) でバッファを書き込む
+    private void flushAfterNextRead() {
+        ReadHookConfig.afterNextRead.set(() -> assertThat(CompletableFuture.supplyAsync(buffer::flush).join()).isTrue());
+    }
+
+    private int likeCountOnPage(FeedCursor cursor) {
+        return feedCache.getPage(cursor, 0, 1).posts().get(0).likeCount();
+    }
+
+    private int countLikeRows(Long postId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE post_id = ?", Integer.class, postId);
+    }
+
+    private int likeCountColumn(Long postId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM posts WHERE id = ?", Integer.class, postId);
+    }
+
+    /**
+     * 投稿の読み込み (一覧・いいね数の API) の直後に処理を割り込ませる PostRepository
+     */
+    @TestConfiguration
+    static class ReadHookConfig {
+
+        // 次の読み込みの直後に1回だけ実行する処理
+        static final AtomicReference<Runnable> afterNextRead = new AtomicReference<>();
+
+        @Bean
+        @Primary
+        PostRepository readHookPostRepository(@Qualifier("postRepository") PostRepository postRepository) {
+            return (PostRepository) Proxy.newProxyInstance(PostRepository.class.getClassLoader(),
+                    new Class<?>[]{PostRepository.class}, (proxy, method, args) -> {
+                        Object result;
+                        try {
+                            result = method.invoke(postRepository, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (method.getName().equals("findPostCardsByIdIn") || method.getName().equals("findStatsByIdIn")) {
+                            Runnable hook = afterNextRead.getAndSet(null);
+                            if (hook != null) {
+                                hook.run();
+                            }
+                        }
+                        return result;
+                    });
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 投稿一覧のライブ更新 (LiveFeedBroadcaster / GET /api/feed/events) のテスト
+ * いいね数の定期送信と詰まった接続の確認は実質止めておき (間隔を長くする)、テストから flushLikeCounts() / dropStalledSubscribers() を呼ぶ
+ */
+@SpringBootTest(properties = {
+        "forum.live.like-window-ms=3600000",
+        "forum.live.heartbeat-interval-ms=3600000",
+        "forum.live.stall-check-interval-ms=3600000",
+        "forum.live.queue-capacity=4",
+        "forum.live.sender-threads=2",
+        "forum.live.send-timeout=200ms"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LiveFeedTests {
+
+    private static final Pattern POST_CREATED = Pattern.compile("event:post-created\ndata:\\{\"postId\":(\\d+)}");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LiveFeedBroadcaster broadcaster;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void anonymousStreamReceivesNewPostsCommentsAndCoalescedLikeCounts() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/feed/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.POST_CREATED, 101L));
+        eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.COMMENTS_CHANGED, 101L));
+        eventPublisher.publishEvent(FeedChangeEvent.likeCountChanged(101L, 1));
+        eventPublisher.publishEvent(FeedChangeEvent.likeCountChanged(101L, 2));
+        eventPublisher.publishEvent(FeedChangeEvent.likeCountChanged(101L, 3));
+        broadcaster.flushLikeCounts();
+
+        waitUntil(() -> result.getResponse().getContentAsString().contains("event:like-count"));
+        String body = result.getResponse().getContentAsString();
+        assertThat(body).startsWith("retry:");
+        assertThat(body).contains("event:post-created\ndata:{\"postId\":101}\n\n");
+        assertThat(body).contains("event:comments-changed\ndata:{\"postId\":101}\n\n");
+        // 3回の変化は最新の値1回にまとめられる
+        assertThat(body).containsOnlyOnce("event:like-count");
+        assertThat(body).contains("event:like-count\ndata:{\"postId\":101,\"likeCount\":3}\n\n");
+    }
+
+    @Test
+    void slowSubscriberDropsOldestEventsWithoutBlockingOthers() throws Exception {
+        double droppedBefore = meterRegistry.counter("forum.live.events.dropped").count();
+        BlockingEmitter slow = new BlockingEmitter();
+        broadcaster.register(slow);
+
+        for (long postId = 1; postId <= 10; postId++) {
+            eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.POST_CREATED, postId));
+        }
+        // 書き込み側は待たされずに戻ってきている。ブラウザが読み始めると、残っているイベントが届く
+        slow.release.countDown();
+
+        waitUntil(() -> slow.postIds().contains(10L));
+        List<Long> received = slow.postIds();
+        // キュー (4件) に残った最新の4件は必ず届き、それより古いものは捨てられる
+        assertThat(received).endsWith(7L, 8L, 9L, 10L);
+        assertThat(received).isSorted();
+        assertThat(received.size()).isLessThanOrEqualTo(6);
+        assertThat(meterRegistry.counter("forum.live.events.dropped").count() - droppedBefore)
+                .isGreaterThanOrEqualTo(10 - received.size());
+
+        slow.complete();
+    }
+
+    @Test
+    void stalledSubscriberIsDroppedWithoutHoldingUpOthers() throws Exception {
+        double stalledBefore = meterRegistry.counter("forum.live.connections.stalled").count();
+        BlockingEmitter stalled = new BlockingEmitter();
+        BlockingEmitter reader = new BlockingEmitter();
+        reader.release.countDown();
+        broadcaster.register(stalled);
+        broadcaster.register(reader);
+        int connectionsBefore = broadcaster.connectionCount();
+
+        // 1. 読めている接続には、詰まった接続を待たずに届く。送信は applicationTaskExecutor ではなく専用のスレッドで行う
+        eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.POST_CREATED, 201L));
+        waitUntil(() -> reader.postIds().contains(201L));
+        assertThat(reader.threadNames).allMatch(name -> name.startsWith("live-feed-"));
+
+        // 2. send-timeout (200ms) を超えて送信が終わらない接続には、それ以降配信しない
+        waitUntil(() -> {
+            broadcaster.dropStalledSubscribers();
+            return meterRegistry.counter("forum.live.connections.stalled").count() - stalledBefore >= 1;
+        });
+        assertThat(broadcaster.connectionCount()).isEqualTo(connectionsBefore - 1);
+        eventPublisher.publishEvent(FeedChangeEvent.of(FeedChangeEvent.Type.POST_CREATED, 202L));
+        waitUntil(() -> reader.postIds().contains(202L));
+
+        // 3. 詰まっていた送信 (接続直後の retry) が終わっても、キューにあったイベントとその後のイベントは送られない
+        stalled.release.countDown();
+        waitUntil(() -> !stalled.frames.isEmpty());
+        Thread.sleep(100);
+        assertThat(stalled.frames).hasSize(1);
+        assertThat(stalled.postIds()).isEmpty();
+
+        reader.complete();
+    }
+
+    private static void waitUntil(Callable<Boolean> condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.call()) {
+            assertThat(System.nanoTime()).as("5秒以内に届くこと").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * release されるまで送信をブロックする (読むのが遅いブラウザの代わり)
+     */
+    static class BlockingEmitter extends SseEmitter {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> frames = new CopyOnWriteArrayList<>();
+        final List<String> threadNames = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(Set<DataWithMediaType> items) throws IOException {
+            threadNames.add(Thread.currentThread().getName());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            StringBuilder frame = new StringBuilder();
+            for (DataWithMediaType item : items) {
+                frame.append(item.getData());
+            }
+            frames.add(frame.toString());
+        }
+
+        List<Long> postIds() {
+            return frames.stream()
+                    .map(POST_CREATED::matcher)
+                    .filter(Matcher::find)
+                    .map(m -> Long.valueOf(m.group(1)))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.example.demo;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 起動中のアプリに対する HTTP 負荷試験ツール
+ *
+ * 合成ユーザー (DatasetGenerator の gen-0, gen-1, ... など) で /login フォームからログインし、
+ * GET / ・POST /create ・POST /comments/create ・POST /api/posts/{id}/toggle-like を指定した割合で繰り返す。
+ * CSRF トークンは list.html と同じく、画面のフォーム (_csrf) と いいね！ボタンの data-csrf-token / data-csrf-header から取る。
+ * 1ユーザー = 1仮想スレッドで、エンドポイントごとのレイテンシを HdrHistogram に記録し、
+ * p50 / p99 / p999 とスループットを表示する。
+ *
+ * 実行例 (アプリを別に起動しておく):
+ *   mvn -B test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.demo.LoadDriver \
+ *       -Dexec.args="--base-url=http://localhost:8080 --users=500 --duration=60s --warmup=10s --mix=feed:80,like:12,comment:5,create:3"
+ *
+ * オプション: --base-url, --users, --user-prefix (gen-), --password (password), --register (ユーザーがいなければ登録する),
+ *            --duration, --warmup (この間の結果は集計しない), --think-time, --mix
+ */
+public class LoadDriver {
+
+    /**
+     * 計測するエンドポイント
+     */
+    public enum Operation {
+        FEED("GET /"),
+        CREATE_POST("POST /create"),
+        COMMENT("POST /comments/create"),
+        LIKE("POST /api/posts/{id}/toggle-like");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * 負荷試験の設定
+     */
+    public record Options(URI baseUrl,
+                          int users,
+                          String userPrefix,
+                          String password,
+                          boolean register,
+                          Duration duration,
+                          Duration warmup,
+                          Duration thinkTime,
+                          Map<Operation, Integer> mix) {
+
+        public static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("--name=value の形式で指定してください: " + arg);
+                }
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+            return new Options(
+                    URI.create(values.getOrDefault("base-url", "http://localhost:8080")),
+                    Integer.parseInt(values.getOrDefault("users", "50")),
+                    values.getOrDefault("user-prefix", "gen-"),
+                    values.getOrDefault("password", "password"),
+                    Boolean.parseBoolean(values.getOrDefault("register", "false")),
+                    parseDuration(values.getOrDefault("duration", "60s")),
+                    parseDuration(values.getOrDefault("warmup", "10s")),
+                    parseDuration(values.getOrDefault("think-time", "0ms")),
+                    parseMix(values.getOrDefault("mix", "feed:80,like:12,comment:5,create:3")));
+        }
+
+        // "60s", "500ms", "2m"
+        private static Duration parseDuration(String value) {
+            if (value.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+            }
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            return switch (value.charAt(value.length() - 1)) {
+                case 's' -> Duration.ofSeconds(amount);
+                case 'm' -> Duration.ofMinutes(amount);
+                default -> throw new IllegalArgumentException("時間は ms / s / m で指定してください: " + value);
+            };
+        }
+
+        // "feed:80,like:12,comment:5,create:3"
+        private static Map<Operation, Integer> parseMix(String value) {
+            Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+            for (String part : value.split(",")) {
+                String[] kv = part.trim().split(":");
+                Operation operation = switch (kv[0]) {
+                    case "feed" -> Operation.FEED;
+                    case "create" -> Operation.CREATE_POST;
+                    case "comment" -> Operation.COMMENT;
+                    case "like" -> Operation.LIKE;
+                    default -> throw new IllegalArgumentException("不明な操作です: " + kv[0]);
+                };
+                mix.put(operation, Integer.parseInt(kv[1]));
+            }
+            return mix;
+        }
+    }
+
+    /**
+     * エンドポイントごとの集計結果 (レイテンシはマイクロ秒)
+     */
+    public record OperationStats(long count, long errors, double throughput,
+                                 long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+    }
+
+    /**
+     * 負荷試験の結果
+     * @param busyRetries ログイン・登録が 503 (パスワードのハッシュ計算が混み合っている) で送り直した回数
+     */
+    public record Report(Duration measured, Map<Operation, OperationStats> operations, long busyRetries) {
+
+        public void print(PrintStream out) {
+            out.printf("計測時間: %d 秒 (ログイン・登録の再送 %d 回)%n", measured.toSeconds(), busyRetries);
+            out.printf("%-36s %9s %7s %9s %9s %9s %9s %9s%n",
+                    "endpoint", "count", "errors", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+            operations.forEach((operation, stats) -> out.printf("%-36s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.label(), stats.count(), stats.errors(), stats.throughput(),
+                    stats.p50Micros() / 1000.0, stats.p99Micros() / 1000.0,
+                    stats.p999Micros() / 1000.0, stats.maxMicros() / 1000.0));
+        }
+    }
+
+    private static final Pattern FORM_CSRF = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final Pattern BUTTON_CSRF_TOKEN = Pattern.compile("data-csrf-token=\"([^\"]+)\"");
+    private static final Pattern BUTTON_CSRF_HEADER = Pattern.compile("data-csrf-header=\"([^\"]+)\"");
+    private static final Pattern POST_ID = Pattern.compile("data-postid=\"(\\d+)\"");
+    private static final Pattern SESSION_COOKIE = Pattern.compile("^(JSESSIONID=[^;]+)");
+
+    private final Options options;
+    private final HttpClient httpClient;
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final LongAdder busyRetries = new LongAdder();
+    private volatile long measureFromNanos;
+
+    public LoadDriver(Options options) {
+        this.options = options;
+        // セッションのクッキーはユーザーごとに自分で管理するので、HttpClient は全ユーザーで共有する
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        for (Operation operation : Operation.values()) {
+            // 1マイクロ秒 〜 60秒 を有効数字3桁で記録する
+            histograms.put(operation, new ConcurrentHistogram(TimeUnit.SECONDS.toMicros(60), 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.out.printf("%s に %d ユーザーで %d 秒間 (ウォームアップ %d 秒) 負荷をかけます: %s%n",
+                options.baseUrl(), options.users(), options.duration().toSeconds(), options.warmup().toSeconds(), options.mix());
+        new LoadDriver(options).run().print(System.out);
+    }
+
+    public Report run() throws Exception {
+        long startNanos = System.nanoTime();
+        measureFromNanos = startNanos + options.warmup().toNanos();
+        long deadlineNanos = measureFromNanos + options.duration().toNanos();
+
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (int i = 0; i < options.users(); i++) {
+                VirtualUser user = new VirtualUser(options.userPrefix() + i);
+                futures.add(executor.submit(() -> {
+                    user.run(deadlineNanos);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(); // ログインできなかった場合などはここで例外になる
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Duration measured = Duration.ofNanos(System.nanoTime() - Math.max(startNanos, measureFromNanos));
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            stats.put(operation, new OperationStats(
+                    histogram.getTotalCount(),
+                    errors.get(operation).sum(),
+                    histogram.getTotalCount() / Math.max(0.001, measured.toMillis() / 1000.0),
+                    histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(99),
+                    histogram.getValueAtPercentile(99.9),
+                    histogram.getMaxValue()));
+        }
+        return new Report(measured, stats, busyRetries.sum());
+    }
+
+    /**
+     * 1人分の合成ユーザー (自分のセッションクッキーと、最後に表示した一覧の CSRF トークン・投稿IDを持つ)
+     */
+    private final class VirtualUser {
+
+        private final String username;
+        private String sessionCookie;
+        private String csrfToken;
+        private String csrfHeader = "X-CSRF-TOKEN";
+        private List<Long> postIds = List.of();
+
+        VirtualUser(String username) {
+            this.username = username;
+        }
+
+        void run(long deadlineNanos) throws IOException, InterruptedException {
+            if (!login(deadlineNanos) && !(options.register() && register(deadlineNanos) && login(deadlineNanos))) {
+                throw new IllegalStateException("ログインできませんでした: " + username);
+            }
+            // ログインするとセッションIDと CSRF トークンが変わるので、一覧を開いて取り直す
+            feed();
+
+            int totalWeight = options.mix().values().stream().mapToInt(Integer::intValue).sum();
+            while (System.nanoTime() < deadlineNanos) {
+                int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+                for (Map.Entry<Operation, Integer> entry : options.mix().entrySet()) {
+                    pick -= entry.getValue();
+                    if (pick < 0) {
+                        perform(entry.getKey());
+                        break;
+                    }
+                }
+                if (!options.thinkTime().isZero()) {
+                    Thread.sleep(options.thinkTime().toMillis());
+                }
+            }
+        }
+
+        private void perform(Operation operation) throws InterruptedException {
+            if (operation != Operation.FEED && operation != Operation.CREATE_POST && postIds.isEmpty()) {
+                operation = Operation.CREATE_POST; // 投稿がまだない掲示板では先に投稿する
+            }
+            try {
+                switch (operation) {
+                    case FEED -> feed();
+                    case CREATE_POST -> createPost();
+                    case COMMENT -> comment();
+                    case LIKE -> like();
+                }
+            } catch (IOException e) {
+                recordError(operation);
+            }
+        }
+
+        private void feed() throws IOException, InterruptedException {
+            HttpResponse<String> response = timed(Operation.FEED, request("/").GET(), 200);
+            if (response.statusCode() == 200) {
+                String html = response.body();
+                csrfToken = firstMatch(BUTTON_CSRF_TOKEN, html, firstMatch(FORM_CSRF, html, csrfToken));
+                csrfHeader = firstMatch(BUTTON_CSRF_HEADER, html, csrfHeader);
+                List<Long> ids = new ArrayList<>();
+                Matcher matcher = POST_ID.matcher(html);
+                while (matcher.find()) {
+                    Long id = Long.valueOf(matcher.group(1));
+                    if (!ids.contains(id)) {
+                        ids.add(id);
+                    }
+                }
+                postIds = ids;
+            }
+        }
+
+        private void createPost() throws IOException, InterruptedException {
+            String title = "load " + username + " " + System.nanoTime();
+            timed(Operation.CREATE_POST, form("/create", "title", title, "content", "負荷試験の投稿\n2行目"), 302);
+        }
+
+        private void comment() throws IOException, InterruptedException {
+            timed(Operation.COMMENT, form("/comments/create",
+                    "postId", String.valueOf(randomPostId()), "content", "負荷試験のコメント"), 302);
+        }
+
+        private void like() throws IOException, InterruptedException {
+            HttpRequest.Builder builder = request("/api/posts/" + randomPostId() + "/toggle-like")
+                    .header(csrfHeader, csrfToken)
+                    .POST(HttpRequest.BodyPublishers.noBody());
+            timed(Operation.LIKE, builder, 200);
+        }
+
+        private boolean login(long deadlineNanos) throws IOException, InterruptedException {
+            String loginPage = send(request("/login").GET()).body();
+            csrfToken = firstMatch(FORM_CSRF, loginPage, null);
+            HttpResponse<String> response = sendUntilNotBusy(
+                    form("/login", "username", username, "password", options.password()), deadlineNanos);
+            // 成功すると一覧へ、失敗するとログイン画面 (/login?error) へリダイレクトされる
+            String location = response.headers().firstValue("Location").orElse("");
+            return response.statusCode() == 302 && !location.contains("/login");
+        }
+
+        private boolean register(long deadlineNanos) throws IOException, InterruptedException {
+            String registerPage = send(request("/register").GET()).body();
+            csrfToken = firstMatch(FORM_CSRF, registerPage, null);
+            return sendUntilNotBusy(
+                    form("/register", "username", username, "password", options.password()), deadlineNanos).statusCode() == 302;
+        }
+
+        // ログイン・登録はパスワードのハッシュ計算の待ち行列があふれると 503 になる (ユーザー数が待ち行列より多いと起こる)。
+        // Retry-After (秒。なければ1秒) 以上待って送り直す。全員が同時に送り直さないよう、待ち時間はその 1〜2 倍でばらつかせる
+        private HttpResponse<String> sendUntilNotBusy(HttpRequest.Builder builder, long deadlineNanos)
+                throws IOException, InterruptedException {
+            while (true) {
+                HttpResponse<String> response = send(builder);
+                if (response.statusCode() != 503 || System.nanoTime() >= deadlineNanos) {
+                    return response;
+                }
+                busyRetries.increment();
+                long retryAfterMillis = TimeUnit.SECONDS.toMillis(retryAfterSeconds(response));
+                Thread.sleep(retryAfterMillis + ThreadLocalRandom.current().nextLong(retryAfterMillis + 1));
+            }
+        }
+
+        private long randomPostId() {
+            return postIds.get(ThreadLocalRandom.current().nextInt(postIds.size()));
+        }
+
+        private HttpRequest.Builder request(String path) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(options.baseUrl().resolve(path))
+                    .timeout(Duration.ofSeconds(30));
+            if (sessionCookie != null) {
+                builder.header("Cookie", sessionCookie);
+            }
+            return builder;
+        }
+
+        private HttpRequest.Builder form(String path, String... keyValues) {
+            StringBuilder body = new StringBuilder("_csrf=").append(encode(csrfToken));
+            for (int i = 0; i < keyValues.length; i += 2) {
+                body.append('&').append(keyValues[i]).append('=').append(encode(keyValues[i + 1]));
+            }
+            return request(path)
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        }
+
+        private HttpResponse<String> timed(Operation operation, HttpRequest.Builder builder, int expectedStatus)
+                throws IOException, InterruptedException {
+            long started = System.nanoTime();
+            HttpResponse<String> response = send(builder);
+            long finished = System.nanoTime();
+            if (started >= measureFromNanos) {
+                if (response.statusCode() == expectedStatus) {
+                    histograms.get(operation).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(finished - started)));
+                } else {
+                    errors.get(operation).increment();
+                }
+            }
+            return response;
+        }
+
+        private void recordError(Operation operation) {
+            if (System.nanoTime() >= measureFromNanos) {
+                errors.get(operation).increment();
+            }
+        }
+
+        private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+            HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            // ログイン時などにセッションIDが変わったら追従する
+            for (String setCookie : response.headers().allValues("Set-Cookie")) {
+                Matcher matcher = SESSION_COOKIE.matcher(setCookie);
+                if (matcher.find()) {
+                    sessionCookie = matcher.group(1);
+                }
+            }
+            return response;
+        }
+    }
+
+    private static long retryAfterSeconds(HttpResponse<?> response) {
+        try {
+            return Math.max(1, Long.parseLong(response.headers().firstValue("Retry-After").orElse("1")));
+        } catch (NumberFormatException e) {
+            return 1; // 日時での指定には対応しない
+        }
+    }
+
+    private static String firstMatch(Pattern pattern, String text, String defaultValue) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : defaultValue;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value != null ? value : "", StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LoadDriver (負荷試験ツール) を実際のサーバーに対して短時間動かし、
+ * ログイン・CSRF トークンの受け渡しを含めて、すべての操作がエラーなく計測されることを確認する
+ * パスワードのハッシュ計算はスレッド1つ・待ち行列1件にして、ユーザー数がそれを超えても (503 になっても) 止まらないことも確かめる
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "forum.password.hashing.threads=1",
+        "forum.password.hashing.queue-capacity=1"
+})
+@ActiveProfiles("test")
+class LoadDriverTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void replaysMixAgainstRunningServer() throws Exception {
+        LoadDriver.Options options = new LoadDriver.Options(
+                URI.create("http://localhost:" + port),
+                3,
+                "load-" + System.nanoTime() + "-",
+                "password",
+                true,
+                Duration.ofSeconds(3),
+                Duration.ofSeconds(3), // ユーザー登録・ログイン (BCrypt) の時間は計測に含めない
+                Duration.ZERO,
+                Map.of(LoadDriver.Operation.FEED, 4, LoadDriver.Operation.CREATE_POST, 1,
+                        LoadDriver.Operation.COMMENT, 2, LoadDriver.Operation.LIKE, 3));
+
+        LoadDriver.Report report = new LoadDriver(options).run();
+
+        assertThat(report.measured()).isGreaterThanOrEqualTo(Duration.ofSeconds(3));
+        for (LoadDriver.Operation operation : LoadDriver.Operation.values()) {
+            LoadDriver.OperationStats stats = report.operations().get(operation);
+            assertThat(stats.count()).as(operation.label()).isPositive();
+            assertThat(stats.errors()).as(operation.label()).isZero();
+            assertThat(stats.throughput()).as(operation.label()).isPositive();
+            assertThat(stats.p99Micros()).as(operation.label()).isGreaterThanOrEqualTo(stats.p50Micros());
+        }
+    }
+
+    @Test
+    void loginsBeyondHashingQueueCapacityBackOffAndRetry() throws Exception {
+        // 1. ハッシュ計算のスレッドをしばらく止めておき、その間に待ち行列 (1件) より多いユーザーが登録・ログインする
+        Timer blockingTimer = Timer.builder("test.password.hashing.blocking").register(meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> blocking = CompletableFuture.supplyAsync(() -> passwordEncoder.execute(blockingTimer, () -> {
+            started.countDown();
+            Thread.sleep(1500);
+            return true;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        LoadDriver.Options options = new LoadDriver.Options(
+                URI.create("http://localhost:" + port),
+                8,
+                "busy-" + System.nanoTime() + "-",
+                "password",
+                true,
+                Duration.ofSeconds(2),
+                Duration.ofSeconds(8),
+                Duration.ZERO,
+                Map.of(LoadDriver.Operation.FEED, 1));
+        LoadDriver.Report report = new LoadDriver(options).run();
+
+        // 2. 503 になった登録・ログインは Retry-After だけ待って送り直され、全員がログインして計測まで進む
+        assertThat(report.busyRetries()).isPositive();
+        LoadDriver.OperationStats feed = report.operations().get(LoadDriver.Operation.FEED);
+        assertThat(feed.count()).isPositive();
+        assertThat(feed.errors()).isZero();
+        assertThat(blocking.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /actuator/prometheus のテスト
+ * コントローラー・リポジトリ・Hibernate・接続プールのメトリクスがメトリクス用のユーザー (Basic 認証) でだけ取得できること、
+ * 遅いリクエストのログに SQL 文が出ること (しきい値 0ms にして、すべてのリクエストを遅い扱いにする)
+ */
+@SpringBootTest(properties = {
+        "forum.slow-request.threshold=0ms",
+        "forum.metrics.password=scrape-secret"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+@ExtendWith(OutputCaptureExtension.class)
+class MetricsEndpointTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheusEndpointExposesApplicationMetrics(CapturedOutput output) throws Exception {
+        mockMvc.perform(get("/").param("page", "1")).andExpect(status().isOk());
+
+        String body = mockMvc.perform(get("/actuator/prometheus").with(httpBasic("prometheus", "scrape-secret")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body)
+                .contains("forum_controller_seconds_count{class=\"com.example.demo.PostController\"")
+                .contains("spring_data_repository_invocations_seconds_count{")
+                .contains("forum_http_sql_statements_count{")
+                .contains("hibernate_query_executions_total{")
+                .contains("hibernate_entities_loads_total{")
+                .contains("hikaricp_connections_pending{")
+                .contains("hikaricp_connections_acquire_seconds_count{");
+
+        // 未ログイン・パスワード違い・掲示板のユーザーでは取得できない
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("prometheus", "wrong")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(user("someone").roles("USER")))
+                .andExpect(status().isForbidden());
+        // ヘルスチェックは認証なしのまま
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+
+        // (コンソールの文字コードによっては日本語が化けるので、英数字の部分で確認する)
+        assertThat(output.getOut()).containsPattern("GET / \\d+ms, SQL \\d+").containsIgnoringCase("select");
+    }
+}
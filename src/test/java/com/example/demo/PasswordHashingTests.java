@@ -0,0 +1,151 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * BoundedPasswordEncoder (専用スレッドでのパスワードのハッシュ化) のテスト
+ * 待ち行列があふれる状況を作りやすいよう、スレッド1つ・待ち行列1件にしている。
+ * コストは 5 にして、それより低い (4) / 高い (6) コストのハッシュがログイン時にハッシュし直されることを確かめる
+ */
+@SpringBootTest(properties = {
+        "forum.password.hashing.threads=1",
+        "forum.password.hashing.queue-capacity=1",
+        "forum.password.hashing.strength=5"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PasswordHashingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void loginRehashesPasswordStoredWithLowerCost() throws Exception {
+        assertLoginRehashes(4);
+    }
+
+    @Test
+    void loginRehashesPasswordStoredWithHigherCost() throws Exception {
+        // 計測し直してコストが下がった場合も、高いコストのハッシュを残さない
+        assertLoginRehashes(6);
+    }
+
+    @Test
+    void loginKeepsPasswordStoredWithCurrentCost() throws Exception {
+        String username = "rehash-" + System.nanoTime();
+        String hash = new BCryptPasswordEncoder(5).encode("password");
+        jdbcTemplate.update("INSERT INTO users (username, password, role) VALUES (?, ?, 'USER')", username, hash);
+
+        mockMvc.perform(formLogin("/login").user(username).password("password"))
+                .andExpect(redirectedUrl("/"));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT password FROM users WHERE username = ?", String.class, username))
+                .isEqualTo(hash);
+    }
+
+    // コスト storedStrength で保存したハッシュが、ログインすると現在のコスト (5) でハッシュし直される
+    private void assertLoginRehashes(int storedStrength) throws Exception {
+        String username = "rehash-" + System.nanoTime();
+        jdbcTemplate.update("INSERT INTO users (username, password, role) VALUES (?, ?, 'USER')",
+                username, new BCryptPasswordEncoder(storedStrength).encode("password"));
+        // 二次キャッシュに古いハッシュを載せておく
+        assertThat(userRepository.findByUsername(username).orElseThrow().getPassword())
+                .startsWith("$2a$0" + storedStrength + "$");
+
+        mockMvc.perform(formLogin("/login").user(username).password("password"))
+                .andExpect(redirectedUrl("/"));
+
+        String stored = jdbcTemplate.queryForObject("SELECT password FROM users WHERE username = ?", String.class, username);
+        assertThat(stored).startsWith("$2a$05$");
+        assertThat(passwordEncoder.matches("password", stored)).isTrue();
+        // キャッシュ経由の読み込みも新しいハッシュを返す
+        assertThat(userRepository.findByUsername(username).orElseThrow().getPassword()).isEqualTo(stored);
+
+        // 新しいハッシュでもう一度ログインできる
+        mockMvc.perform(formLogin("/login").user(username).password("password"))
+                .andExpect(redirectedUrl("/"));
+    }
+
+    @Test
+    void saturatedHashingFailsFastWith503() throws Exception {
+        double rejectedBefore = meterRegistry.counter("forum.password.hashing.rejected").count();
+        Timer blockingTimer = Timer.builder("test.password.hashing.blocking").register(meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // 1件を計算中、1件を待ち行列に入れて、どちらも止めておく
+        CompletableFuture<Object> running = CompletableFuture.supplyAsync(() -> passwordEncoder.execute(blockingTimer, () -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Object> queued = CompletableFuture.supplyAsync(() -> passwordEncoder.execute(blockingTimer, () -> true));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("forum.password.hashing.queue.depth").gauge().value() < 1) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+
+        try {
+            assertThatThrownBy(() -> passwordEncoder.encode("password")).isInstanceOf(PasswordHashingBusyException.class);
+            mockMvc.perform(post("/register").with(csrf()).param("username", "busy-" + System.nanoTime()).param("password", "password"))
+                    .andExpect(status().isServiceUnavailable());
+            mockMvc.perform(post("/login").with(csrf()).param("username", "busy").param("password", "password"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        } finally {
+            release.countDown();
+        }
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+        assertThat(meterRegistry.counter("forum.password.hashing.rejected").count() - rejectedBefore).isEqualTo(3);
+
+        // 空けば通常どおり計算する
+        assertThat(passwordEncoder.matches("password", passwordEncoder.encode("password"))).isTrue();
+    }
+
+    @Test
+    void calibrationPicksStrengthClosestToTargetTime() {
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        // strength 10 で 60ms なら 250ms に最も近いのは 12 (240ms)
+        assertThat(BoundedPasswordEncoder.strengthFor(60 * ms, 10, 250 * ms, 14)).isEqualTo(12);
+        // 速いマシンでも上限を超えない / 遅いマシンでも下限より弱くしない
+        assertThat(BoundedPasswordEncoder.strengthFor(ms / 100, 10, 250 * ms, 14)).isEqualTo(14);
+        assertThat(BoundedPasswordEncoder.strengthFor(2000 * ms, 10, 250 * ms, 14)).isEqualTo(10);
+    }
+}
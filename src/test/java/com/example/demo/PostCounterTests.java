@@ -0,0 +1,102 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * いいね数・コメント数カウンター (posts.like_count / posts.comment_count) のテスト
+ * 各エンドポイントの書き込みで likes / comments の件数と一致したままであることと、
+ * PostCounterRepairJob がずれた行を直すことを確かめる
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PostCounterTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostCounterRepairJob repairJob;
+
+    @Autowired
+    private PostStatsCache postStatsCache;
+
+    @Test
+    void countersFollowLikesAndComments() throws Exception {
+        User author = testData.createUser("counter-");
+        ForumUserDetails reader = new ForumUserDetails(testData.createUser("counter-"));
+        Long postId = testData.createPost(author.getId(), "counter");
+
+        // 1. いいね！・取り消し
+        mockMvc.perform(post("/api/posts/{id}/toggle-like", postId).with(user(reader)).with(csrf()))
+                .andExpect(jsonPath("$.likeCount").value(1));
+        assertCounters(postId, 1, 0);
+        mockMvc.perform(post("/api/posts/{id}/toggle-like", postId).with(user(reader)).with(csrf()))
+                .andExpect(jsonPath("$.likeCount").value(0));
+        assertCounters(postId, 0, 0);
+
+        // 2. コメントの作成・削除
+        mockMvc.perform(post("/comments/create").with(user(reader)).with(csrf())
+                        .param("postId", postId.toString()).param("content", "counter-comment"))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(post("/comments/create").with(user(new ForumUserDetails(author))).with(csrf())
+                        .param("postId", postId.toString()).param("content", "counter-comment"))
+                .andExpect(status().is3xxRedirection());
+        assertCounters(postId, 0, 2);
+        Long commentId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM comments WHERE user_id = ?", Long.class, reader.getId());
+        mockMvc.perform(get("/comments/delete/{id}", commentId).with(user(reader)))
+                .andExpect(status().is3xxRedirection());
+        assertCounters(postId, 0, 1);
+    }
+
+    @Test
+    void repairFixesDriftedCounters() {
+        User author = testData.createUser("counter-");
+        Long postId = testData.createPost(author.getId(), "counter");
+        testData.like(author.getId(), postId);
+        testData.createComment(author.getId(), postId);
+
+        // 1. SQL で直接書き換えてずらす (いいね数の API はずれた値をキャッシュする)
+        jdbcTemplate.update("UPDATE posts SET like_count = 7, comment_count = 0 WHERE id = ?", postId);
+        assertThat(postStatsCache.getStats(List.of(postId)).get(postId).likeCount()).isEqualTo(7);
+
+        // 2. 修復すると件数どおりに戻り、キャッシュも捨てられる
+        repairJob.repair();
+        assertCounters(postId, 1, 1);
+        assertThat(postStatsCache.getStats(List.of(postId)).get(postId)).isEqualTo(new PostStats(postId, 1, 1));
+    }
+
+    // カウンター列の値と、likes / comments を数えた件数の両方を確かめる
+    private void assertCounters(Long postId, int likes, int comments) {
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM posts WHERE id = ?", Integer.class, postId))
+                .isEqualTo(likes);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE post_id = ?", Integer.class, postId))
+                .isEqualTo(likes);
+        assertThat(jdbcTemplate.queryForObject("SELECT comment_count FROM posts WHERE id = ?", Integer.class, postId))
+                .isEqualTo(comments);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments WHERE post_id = ?", Integer.class, postId))
+                .isEqualTo(comments);
+    }
+}
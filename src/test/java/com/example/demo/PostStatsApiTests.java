@@ -0,0 +1,92 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * いいね数・コメント数の API (GET /api/posts/stats) のテスト
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PostStatsApiTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void anonymousStatsAreServedFromPerPostCacheAndRevalidated() throws Exception {
+        User author = testData.createUser("stats-");
+        Long first = testData.createPost(author.getId(), "stats");
+        Long second = testData.createPost(author.getId(), "stats");
+        String ids = second + "," + first + "," + Long.MAX_VALUE;
+
+        // 指定した順で返し、存在しない投稿は含めない
+        MvcResult miss = mockMvc.perform(get("/api/posts/stats").param("ids", ids))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts.length()").value(2))
+                .andExpect(jsonPath("$.posts[0].id").value(second))
+                .andExpect(jsonPath("$.posts[1].id").value(first))
+                .andExpect(jsonPath("$.posts[1].likeCount").value(0))
+                .andExpect(jsonPath("$.posts[1].liked").value(false))
+                .andReturn();
+        assertThat(miss.getRequest().getAttribute(SqlStatementBudgetInterceptor.STATEMENT_COUNT_ATTRIBUTE)).isEqualTo(1);
+        String etag = miss.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // 2回目は投稿ごとのキャッシュから返す (SQL なし)。何も書き込まれていなければ 304
+        MvcResult hit = mockMvc.perform(get("/api/posts/stats").param("ids", first.toString()))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(hit.getRequest().getAttribute(SqlStatementBudgetInterceptor.STATEMENT_COUNT_ATTRIBUTE)).isEqualTo(0);
+        mockMvc.perform(get("/api/posts/stats").param("ids", ids).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // いいね！とコメントの後は新しい数を返す
+        User reader = testData.createUser("stats-");
+        mockMvc.perform(post("/api/posts/" + first + "/toggle-like").with(user(new ForumUserDetails(reader))).with(csrf()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/comments/create").with(user(new ForumUserDetails(reader))).with(csrf())
+                        .param("postId", first.toString()).param("content", "stats"))
+                .andExpect(status().is3xxRedirection());
+
+        mockMvc.perform(get("/api/posts/stats").param("ids", ids).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[1].likeCount").value(1))
+                .andExpect(jsonPath("$.posts[1].commentCount").value(1))
+                .andExpect(jsonPath("$.posts[1].liked").value(false));
+
+        // ログイン中はいいね済みかも返す
+        mockMvc.perform(get("/api/posts/stats").param("ids", ids).with(user(new ForumUserDetails(reader))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[0].liked").value(false))
+                .andExpect(jsonPath("$.posts[1].liked").value(true));
+    }
+
+    @Test
+    void rejectsMoreThanOnePageOfIds() throws Exception {
+        StringBuilder ids = new StringBuilder("1");
+        for (int i = 2; i <= 51; i++) {
+            ids.append(',').append(i);
+        }
+        mockMvc.perform(get("/api/posts/stats").param("ids", ids.toString()))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RequestConcurrencyLimitFilter (仮想スレッドモードの同時処理数の上限) のテスト
+ * 仮想スレッドモードではフィルターがデフォルトで有効になる
+ */
+@SpringBootTest(properties = {
+        "spring.threads.virtual.enabled=true",
+        "forum.concurrency.limit.max-in-flight=1",
+        "forum.concurrency.limit.max-waiting=1",
+        "forum.concurrency.limit.acquire-timeout=200ms"
+})
+@ActiveProfiles("test")
+class RequestConcurrencyLimitTests {
+
+    @Autowired
+    private RequestConcurrencyLimitFilter filter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void requestsBeyondLimitWaitThenFailFastWith503() throws Exception {
+        double rejectedBefore = meterRegistry.counter("forum.http.concurrency.rejected").count();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // 1件目は処理中のまま止めておく
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() ->
+                perform("/", new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest request, HttpServletResponse response) {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 2件目は acquire-timeout まで待ってから 503
+        MockHttpServletResponse waited = perform("/", null);
+        assertThat(waited.getStatus()).isEqualTo(503);
+        assertThat(waited.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        // 静的ファイルは上限の対象外
+        assertThat(perform("/css/style.css", null).getStatus()).isEqualTo(200);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        // 空いたら通常どおり処理される
+        assertThat(perform("/", null).getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.counter("forum.http.concurrency.rejected").count() - rejectedBefore).isEqualTo(1);
+    }
+
+    private MockHttpServletResponse perform(String path, HttpServlet servlet) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, servlet != null ? new MockFilterChain(servlet) : new MockFilterChain());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+}
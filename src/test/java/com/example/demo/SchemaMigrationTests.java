@@ -0,0 +1,100 @@
+package com.example.demo;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Flyway のマイグレーション (db/migration) と、一覧などのクエリの実行計画のテスト
+ *
+ * 実行計画は EXPLAIN で確認する。テーブルの全件走査 (H2: tableScan / PostgreSQL: Seq Scan) がないこと、
+ * PostgreSQL では想定したインデックスが使われることを確認する
+ * (テストのデータは少なく、PostgreSQL は件数が少ないと全件走査を選ぶので、enable_seqscan=off にして
+ *  「インデックスが使えるか」を見る。H2 は外部キーに自動でインデックスを作るので、名前までは確認しない)
+ * 確認するクエリは PostRepository / CommentRepository / PostCounterRepairJob などが発行するものと同じ形にしてある
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SchemaMigrationTests {
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void migrationsAreAppliedOnceAndSkippedOnRestart() {
+        MigrationInfo[] applied = flyway.info().applied();
+        assertThat(Arrays.stream(applied).filter(info -> info.getVersion() != null && info.getState() == MigrationState.SUCCESS)
+                .map(info -> info.getVersion().getVersion()))
+                .contains("1", "2");
+
+        // 起動し直したときと同じく、もう一度 migrate しても何も実行されない
+        assertThat(flyway.migrate().migrationsExecuted).isZero();
+    }
+
+    @Test
+    void feedQueriesUseIndexes() {
+        // 一覧の投稿ID (ページ番号 / キーセット)
+        assertUsesIndex("SELECT p.id FROM posts p ORDER BY p.created_at DESC, p.id DESC LIMIT 6 OFFSET 0",
+                "idx_posts_created_at_id");
+        assertUsesIndex("SELECT p.id FROM posts p WHERE p.created_at < TIMESTAMP '2025-01-01 00:00:00' "
+                + "OR (p.created_at = TIMESTAMP '2025-01-01 00:00:00' AND p.id < 100) "
+                + "ORDER BY p.created_at DESC, p.id DESC LIMIT 6", "idx_posts_created_at_id");
+        // 表示する投稿 (主キー)
+        assertUsesIndex("SELECT p.id, u.username FROM posts p LEFT JOIN users u ON u.id = p.user_id WHERE p.id IN (1, 2, 3)",
+                null);
+        // 投稿ごとの新しいコメント と 「以前のコメントを表示」
+        assertUsesIndex("SELECT r.id FROM (SELECT c.id AS id, ROW_NUMBER() OVER (PARTITION BY c.post_id "
+                + "ORDER BY c.created_at DESC, c.id DESC) AS rn FROM comments c WHERE c.post_id IN (1, 2, 3)) r WHERE r.rn <= 3",
+                "idx_comments_post_created_at_id");
+        assertUsesIndex("SELECT c.id FROM comments c WHERE c.post_id = 1 AND (c.created_at < TIMESTAMP '2025-01-01 00:00:00' "
+                + "OR (c.created_at = TIMESTAMP '2025-01-01 00:00:00' AND c.id < 100)) "
+                + "ORDER BY c.created_at DESC, c.id DESC LIMIT 21", "idx_comments_post_created_at_id");
+        // 表示中のページでいいね！済みの投稿 (主キー)
+        assertUsesIndex("SELECT l.post_id FROM likes l WHERE l.user_id = 1 AND l.post_id IN (1, 2, 3)", null);
+    }
+
+    @Test
+    void foreignKeyLookupsUseIndexes() {
+        // いいね数の数え直し・投稿削除時の ON DELETE CASCADE
+        assertUsesIndex("SELECT COUNT(*) FROM likes l WHERE l.post_id = 1", "idx_likes_post_id");
+        // ユーザー削除時の ON DELETE CASCADE
+        assertUsesIndex("SELECT id FROM posts WHERE user_id = 1", "idx_posts_user_id");
+        assertUsesIndex("SELECT id FROM comments WHERE user_id = 1", "idx_comments_user_id");
+    }
+
+    private void assertUsesIndex(String sql, String postgresIndex) {
+        boolean postgres = isPostgres();
+        String plan = transactionTemplate.execute(status -> {
+            if (postgres) {
+                jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            }
+            return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+        });
+        assertThat(plan).as(sql).doesNotContain("tableScan").doesNotContain("Seq Scan");
+        if (postgres && postgresIndex != null) {
+            assertThat(plan).as(sql).contains(postgresIndex);
+        }
+    }
+
+    private boolean isPostgres() {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 二次キャッシュ (SecondLevelCacheConfig) のテスト
+ * 2回目の読み込みで SQL が実行されないことと、各経路の書き込みの後に古い内容が返らないことを確かめる
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SecondLevelCacheTests {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void postIsCachedAndEvictedAfterWrites() throws Exception {
+        User author = testData.createUser("l2-");
+        Long postId = testData.createPost(author.getId(), "l2");
+
+        Long otherPostId = testData.createPost(author.getId(), "l2-other");
+
+        assertThat(statementsOf(() -> postRepository.findById(postId))).isEqualTo(1);
+        assertThat(statementsOf(() -> postRepository.findById(postId))).isZero();
+        postRepository.findById(otherPostId);
+
+        // JdbcTemplate でのいいね！ (FeedChangeEvent → EntityCacheEvictor)
+        mockMvc.perform(post("/api/posts/{id}/toggle-like", postId).with(user(new ForumUserDetails(author))).with(csrf()))
+                .andExpect(status().isOk());
+        assertThat(postRepository.findById(postId).orElseThrow().getLikeCount()).isEqualTo(1);
+
+        // コメント (JdbcTemplate でのコメント数の更新 → FeedChangeEvent → EntityCacheEvictor)
+        mockMvc.perform(post("/comments/create").with(user(new ForumUserDetails(author))).with(csrf())
+                        .param("postId", postId.toString()).param("content", "l2-comment"))
+                .andExpect(status().is3xxRedirection());
+        assertThat(postRepository.findById(postId).orElseThrow().getCommentCount()).isEqualTo(1);
+
+        // いいね！・コメントではその投稿だけが消え、ほかの投稿はキャッシュに残る
+        assertThat(statementsOf(() -> postRepository.findById(otherPostId))).isZero();
+
+        assertThat(meterRegistry.get("forum.cache.hit.ratio").tag("region", SecondLevelCacheConfig.POSTS_REGION)
+                .gauge().value()).isGreaterThan(0);
+    }
+
+    @Test
+    void usernameLookupIsCachedAndEvictedOnDelete() {
+        // 作成時にリポジトリから読み込むので、キャッシュに入っている
+        User user = testData.createUser("l2-");
+        String username = user.getUsername();
+        assertThat(statementsOf(() -> userRepository.findByUsername(username))).isZero();
+
+        // JPQL の一括 DELETE (退会) の後は見つからない
+        userRepository.deleteInBulkById(user.getId());
+        assertThat(userRepository.findByUsername(username)).isEmpty();
+    }
+
+    private int statementsOf(Supplier<?> action) {
+        SqlStatementCounter.begin("second-level-cache", Integer.MAX_VALUE, false);
+        try {
+            action.get();
+        } catch (RuntimeException e) {
+            SqlStatementCounter.end();
+            throw e;
+        }
+        return SqlStatementCounter.end().count();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * @SqlStatementBudget のテスト
+ * 一覧・いいね！・コメントの各エンドポイントが、キャッシュが空の状態でも宣言した SQL 文の数に収まること
+ * (テストでは forum.sql.budget.strict=true なので、超えればリクエスト自体が失敗する)
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(SqlStatementBudgetTests.NPlusOneController.class)
+class SqlStatementBudgetTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // 一覧の先頭に来るよう未来の日時で作った投稿
+    private final List<Long> postIds = new ArrayList<>();
+
+    @AfterEach
+    void deletePosts() {
+        // 残っていると、ほかのテストの投稿が1ページ目に出なくなる (いいね・コメントは ON DELETE CASCADE で消える)
+        for (Long id : postIds) {
+            jdbcTemplate.update("DELETE FROM posts WHERE id = ?", id);
+        }
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+    }
+
+    @Test
+    void feedLikeAndCommentEndpointsStayWithinBudget() throws Exception {
+        User user = testData.createUser("budget-");
+        ForumUserDetails principal = new ForumUserDetails(user);
+
+        // 1ページより1件多い投稿を、それぞれ別の投稿者で作り、別のユーザーのコメントを付ける
+        // (投稿ごと・投稿者ごと・コメントごとに SQL が増える N+1 は、予算の余裕では吸収できない数になる)
+        LocalDateTime newest = LocalDateTime.now().plusYears(100);
+        for (int i = 0; i <= PostController.PAGE_SIZE; i++) {
+            User author = testData.createUser("budget-");
+            Long postId = testData.createPost(author.getId(), "budget-" + i, newest.minusMinutes(i));
+            for (int j = 0; j < 2; j++) {
+                testData.createComment(testData.createUser("budget-").getId(), postId, newest.minusMinutes(i).plusSeconds(j + 1));
+            }
+            testData.like(user.getId(), postId);
+            postIds.add(postId);
+        }
+        Long postId = postIds.get(0);
+
+        // 一覧はキャッシュが空のとき (一番 SQL が多いとき) で確認する
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+        MvcResult anonymous = assertWithinBudget(get("/"));
+        eventPublisher.publishEvent(FeedChangeEvent.all());
+        MvcResult loggedIn = assertWithinBudget(get("/").with(user(principal)));
+        // 作った投稿が1ページ目を埋めている (最後の1件は次のページ)
+        for (int i = 0; i < PostController.PAGE_SIZE; i++) {
+            assertThat(anonymous.getResponse().getContentAsString()).contains("budget-" + i);
+            assertThat(loggedIn.getResponse().getContentAsString()).contains("budget-" + i);
+        }
+        assertThat(anonymous.getResponse().getContentAsString()).doesNotContain("budget-" + PostController.PAGE_SIZE);
+
+        assertWithinBudget(post("/api/posts/{id}/toggle-like", postId).with(user(principal)).with(csrf()));
+
+        assertWithinBudget(post("/comments/create").with(user(principal)).with(csrf())
+                .param("postId", postId.toString()).param("content", "budget"));
+        Long commentId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM comments WHERE post_id = ?", Long.class, postId);
+        assertWithinBudget(get("/comments/edit/{id}", commentId).with(user(principal)));
+        assertWithinBudget(post("/comments/update").with(user(principal)).with(csrf())
+                .param("id", commentId.toString()).param("content", "budget updated"));
+        assertWithinBudget(get("/api/posts/{id}/comments", postId).param("before", "2099-01-01T00:00:00,0"));
+        assertWithinBudget(get("/comments/delete/{id}", commentId).with(user(principal)));
+    }
+
+    @Test
+    void strictModeFailsRequestThatExceedsBudget() {
+        // (認証が必要な URL なのでログインしておく)
+        assertThatThrownBy(() -> mockMvc.perform(get("/test/n-plus-one").with(user(new ForumUserDetails(testData.createUser("budget-"))))))
+                .hasRootCauseInstanceOf(SqlStatementBudgetExceededException.class);
+    }
+
+    private MvcResult assertWithinBudget(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        assertThat(result.getResponse().getStatus()).isLessThan(400);
+
+        SqlStatementBudget budget = ((HandlerMethod) result.getHandler()).getMethodAnnotation(SqlStatementBudget.class);
+        assertThat(budget).as("%s に @SqlStatementBudget がありません", result.getRequest().getRequestURI()).isNotNull();
+        Object count = result.getRequest().getAttribute(SqlStatementBudgetInterceptor.STATEMENT_COUNT_ATTRIBUTE);
+        assertThat((Integer) count).isLessThanOrEqualTo(budget.value());
+        return result;
+    }
+
+    /**
+     * 上限 1 文のところで 2 文実行する (N+1 の代わり)
+     */
+    @TestConfiguration
+    @RestController
+    static class NPlusOneController {
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @SqlStatementBudget(1)
+        @GetMapping("/test/n-plus-one")
+        public int nPlusOne() {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM posts", Integer.class);
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments", Integer.class);
+        }
+    }
+}
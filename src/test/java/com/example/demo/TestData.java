@@ -0,0 +1,76 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * テスト用のユーザー・投稿・コメント・いいね！を SQL で直接作る
+ * (コントローラーやイベントを通さないので、一覧のキャッシュは必要に応じてテスト側で捨てること)
+ * ユーザー名は接頭辞 + System.nanoTime() にして、同じ DB を使うテスト同士で重ならないようにしている
+ */
+@Component
+class TestData {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * パスワード 'x' (ログインできない) のユーザーを作る
+     */
+    User createUser(String prefix) {
+        return createUser(prefix, "x");
+    }
+
+    /**
+     * ユーザーを作り、リポジトリから読み込んで返す (二次キャッシュにも載る)
+     * @param passwordHash ログインさせるときは PasswordEncoder でハッシュ化したもの
+     */
+    User createUser(String prefix, String passwordHash) {
+        String username = prefix + System.nanoTime();
+        jdbcTemplate.update("INSERT INTO users (username, password, role) VALUES (?, ?, 'USER')", username, passwordHash);
+        return userRepository.findByUsername(username).orElseThrow();
+    }
+
+    Long createPost(Long userId, String title) {
+        return createPost(userId, title, LocalDateTime.now());
+    }
+
+    /**
+     * 投稿を作る (本文はタイトルと同じ。表示用の content_html などは ContentBackfillJob が埋めるまで空)
+     */
+    Long createPost(Long userId, String title, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO posts (title, content, created_at, user_id) VALUES (?, ?, ?, ?)",
+                title, title, Timestamp.valueOf(createdAt), userId);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts WHERE user_id = ?", Long.class, userId);
+    }
+
+    Long createComment(Long userId, Long postId) {
+        return createComment(userId, postId, LocalDateTime.now());
+    }
+
+    /**
+     * コメントを作り、投稿のコメント数も増やす
+     */
+    Long createComment(Long userId, Long postId, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO comments (content, created_at, user_id, post_id) VALUES ('comment', ?, ?, ?)",
+                Timestamp.valueOf(createdAt), userId, postId);
+        jdbcTemplate.update("UPDATE posts SET comment_count = comment_count + 1 WHERE id = ?", postId);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM comments WHERE user_id = ?", Long.class, userId);
+    }
+
+    /**
+     * いいね！を付け、投稿のいいね！数も増やす
+     */
+    void like(Long userId, Long postId) {
+        jdbcTemplate.update("INSERT INTO likes (user_id, post_id, created_at) VALUES (?, ?, ?)",
+                userId, postId, Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.update("UPDATE posts SET like_count = like_count + 1 WHERE id = ?", postId);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * プラットフォームスレッドと仮想スレッド (spring.threads.virtual.enabled) の比較
+ *
+ * 同じ DB でアプリをモードごとに起動し、それぞれに LoadDriver で同じ負荷をかけて、
+ * エンドポイントごとのスループットとレイテンシを並べて表示する。
+ * 同じ JVM で続けて実行すると後のモードほど JIT が温まっていて有利になる (CPU が少ないと結果が逆転するほど) ので、
+ * きちんと比べるときは --modes=platform と --modes=virtual を別々のプロセスで実行する。
+ *
+ * 実行例 (DB の接続先は -Dspring.datasource.* で指定する):
+ *   mvn -B test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.demo.ThreadModeComparison \
+ *       -Dexec.args="--tomcat-threads=50 --users=400 --duration=30s --warmup=20s"
+ *
+ * オプション: --tomcat-threads (プラットフォームスレッドのモードの Tomcat のスレッド数。デフォルト 200)
+ *            --modes (実行するモードと順番。デフォルト platform,virtual)
+ *            それ以外は LoadDriver と同じ (--base-url は無視する。ユーザーがいなければ登録する)
+ */
+public class ThreadModeComparison {
+
+    public static void main(String[] args) throws Exception {
+        String tomcatThreads = "200";
+        String modes = "platform,virtual";
+        List<String> driverArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--tomcat-threads=")) {
+                tomcatThreads = arg.substring("--tomcat-threads=".length());
+            } else if (arg.startsWith("--modes=")) {
+                modes = arg.substring("--modes=".length());
+            } else {
+                driverArgs.add(arg);
+            }
+        }
+        LoadDriver.Options base = LoadDriver.Options.parse(driverArgs.toArray(String[]::new));
+        System.out.printf("Java %s / %d CPU / %d ユーザー / %d 秒間 (ウォームアップ %d 秒) / %s%n",
+                Runtime.version(), Runtime.getRuntime().availableProcessors(), base.users(),
+                base.duration().toSeconds(), base.warmup().toSeconds(), base.mix());
+
+        Map<String, LoadDriver.Report> reports = new LinkedHashMap<>();
+        for (String name : modes.split(",")) {
+            boolean virtual = switch (name.trim()) {
+                case "platform" -> false;
+                case "virtual" -> true;
+                default -> throw new IllegalArgumentException("--modes は platform / virtual で指定してください: " + name);
+            };
+            String mode = virtual ? "virtual" : "platform (threads=" + tomcatThreads + ")";
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                    .properties(
+                            "server.port=0",
+                            "spring.threads.virtual.enabled=" + virtual,
+                            "server.tomcat.threads.max=" + tomcatThreads,
+                            "forum.counters.repair-on-startup=false")
+                    .run()) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                LoadDriver.Options options = new LoadDriver.Options(URI.create("http://localhost:" + port),
+                        base.users(), base.userPrefix(), base.password(), true,
+                        base.duration(), base.warmup(), base.thinkTime(), base.mix());
+                System.out.printf("%n=== %s ===%n", mode);
+                LoadDriver.Report report = new LoadDriver(options).run();
+                report.print(System.out);
+                reports.put(mode, report);
+            }
+        }
+
+        System.out.printf("%n%-28s %10s %9s %12s %12s%n", "mode", "req/s", "errors", "GET / p99", "like p99");
+        reports.forEach((mode, report) -> {
+            double throughput = 0;
+            long errors = 0;
+            for (LoadDriver.OperationStats stats : report.operations().values()) {
+                throughput += stats.throughput();
+                errors += stats.errors();
+            }
+            System.out.printf("%-28s %10.1f %9d %10.2fms %10.2fms%n", mode, throughput, errors,
+                    report.operations().get(LoadDriver.Operation.FEED).p99Micros() / 1000.0,
+                    report.operations().get(LoadDriver.Operation.LIKE).p99Micros() / 1000.0);
+        });
+    }
+}